@@ -0,0 +1,39 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Tobias Baumann.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Tobias Baumann - initial API and implementation
+ ******************************************************************************/
+package de.baumato.jobs.builder.benchmarks;
+
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs all benchmarks of this bundle headless, i.e. without starting a workbench. Each benchmark
+ * is run with 1, 2, 4 and 8 threads. An optional first argument restricts the benchmarks to run
+ * (regular expression, e.g. "JobBuilderBenchmark.build").
+ */
+public class BenchmarkMain {
+
+  private static final int[] THREAD_COUNTS = {1, 2, 4, 8};
+
+  private BenchmarkMain() {}
+
+  public static void main(String[] args) throws RunnerException {
+    String include = args.length > 0 ? args[0] : BenchmarkMain.class.getPackage().getName();
+    for (int threads : THREAD_COUNTS) {
+      Options options = new OptionsBuilder()
+          .include(include)
+          .threads(threads)
+          .build();
+      new Runner(options).run();
+    }
+  }
+}
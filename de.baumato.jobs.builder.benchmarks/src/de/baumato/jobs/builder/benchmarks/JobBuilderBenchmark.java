@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Tobias Baumann.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Tobias Baumann - initial API and implementation
+ ******************************************************************************/
+package de.baumato.jobs.builder.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.core.runtime.jobs.JobChangeAdapter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.baumato.jobs.builder.JobTemplate;
+import de.baumato.jobs.builder.Jobs;
+
+/**
+ * Measures the cost of building jobs with the {@code JobBuilder} and of handing them over to the
+ * job manager. The scheduled jobs do nothing, so mainly the builder, the job construction and
+ * {@code Job.schedule()} are measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JobBuilderBenchmark {
+
+  private static final String TITLE = "benchmark job";
+  private static final Object FAMILY = JobBuilderBenchmark.class;
+
+  private static final Runnable NOOP = new Runnable() {
+    @Override
+    public void run() {}
+  };
+
+  private static final JobChangeAdapter LISTENER = new JobChangeAdapter();
+
+  private static final JobTemplate TEMPLATE = Jobs.builder().title(TITLE).family(FAMILY)
+      .isSystemJob().highPriority().runsNotConcurrently().addJobChangeListener(LISTENER)
+      .toTemplate();
+
+  @TearDown(Level.Iteration)
+  public void cancelAndJoinScheduledJobs() throws InterruptedException {
+    Job.getJobManager().cancel(FAMILY);
+    Job.getJobManager().join(FAMILY, null);
+  }
+
+  @Benchmark
+  public Job build() {
+    return Jobs.builder(TITLE, NOOP).build();
+  }
+
+  @Benchmark
+  public Job buildWithAllOptions() {
+    return Jobs.builder()
+        .title(TITLE)
+        .family(FAMILY)
+        .isSystemJob()
+        .highPriority()
+        .runsNotConcurrently()
+        .addJobChangeListener(LISTENER)
+        .runnable(NOOP)
+        .build();
+  }
+
+  @Benchmark
+  public Job buildFromTemplate() {
+    return TEMPLATE.build(NOOP);
+  }
+
+  @Benchmark
+  public Job buildAndSchedule() {
+    return Jobs.builder(TITLE, NOOP).family(FAMILY).isSystemJob().buildAndSchedule();
+  }
+
+  @Benchmark
+  public Job buildAndScheduleWithDelay() {
+    // the delay keeps the jobs sleeping, they get canceled after each iteration
+    return Jobs.builder(TITLE, NOOP).family(FAMILY).isSystemJob()
+        .buildAndScheduleWithDelay(1, TimeUnit.HOURS);
+  }
+}
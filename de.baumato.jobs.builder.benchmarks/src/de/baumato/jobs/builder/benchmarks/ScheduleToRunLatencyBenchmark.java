@@ -0,0 +1,75 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Tobias Baumann.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Tobias Baumann - initial API and implementation
+ ******************************************************************************/
+package de.baumato.jobs.builder.benchmarks;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.core.runtime.jobs.Job;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.baumato.jobs.builder.Jobs;
+
+/**
+ * Measures the end-to-end latency from {@code buildAndSchedule()} until the job's runnable is
+ * executed by a worker thread. Run it with different thread counts (see {@link BenchmarkMain}) to
+ * see how the latency behaves when several threads schedule jobs concurrently.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScheduleToRunLatencyBenchmark {
+
+  private static final String TITLE = "latency benchmark job";
+  private static final Object FAMILY = ScheduleToRunLatencyBenchmark.class;
+
+  @TearDown(Level.Iteration)
+  public void joinScheduledJobs() throws InterruptedException {
+    Job.getJobManager().join(FAMILY, null);
+  }
+
+  @Benchmark
+  public void scheduleToRun() throws InterruptedException {
+    final CountDownLatch started = new CountDownLatch(1);
+    Jobs.builder(TITLE, new Runnable() {
+      @Override
+      public void run() {
+        started.countDown();
+      }
+    }).family(FAMILY).isSystemJob().buildAndSchedule();
+    started.await();
+  }
+
+  @Benchmark
+  public void scheduleToRunNotConcurrently() throws InterruptedException {
+    final CountDownLatch started = new CountDownLatch(1);
+    Jobs.builder(TITLE, new Runnable() {
+      @Override
+      public void run() {
+        started.countDown();
+      }
+    }).family(FAMILY).isSystemJob().runsNotConcurrently().buildAndSchedule();
+    started.await();
+  }
+}
@@ -0,0 +1,30 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Tobias Baumann.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Tobias Baumann - initial API and implementation
+ ******************************************************************************/
+package de.baumato.jobs.builder.jfr;
+
+import org.osgi.framework.BundleActivator;
+import org.osgi.framework.BundleContext;
+
+/**
+ * Installs the flight recorder events of jobs while this bundle is active.
+ */
+public class Activator implements BundleActivator {
+
+  @Override
+  public void start(BundleContext context) throws Exception {
+    JobFlightRecorder.install();
+  }
+
+  @Override
+  public void stop(BundleContext context) throws Exception {
+    JobFlightRecorder.uninstall();
+  }
+}
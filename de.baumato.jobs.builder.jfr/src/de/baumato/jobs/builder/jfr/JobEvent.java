@@ -0,0 +1,47 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Tobias Baumann.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Tobias Baumann - initial API and implementation
+ ******************************************************************************/
+package de.baumato.jobs.builder.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+
+import de.baumato.jobs.builder.JobExecutionRecord;
+
+/**
+ * Base of the job events, carrying the configuration of the job.
+ */
+@Category({"Eclipse", "Jobs"})
+abstract class JobEvent extends Event {
+
+  @Label("Title")
+  String title;
+
+  @Label("Family")
+  String family;
+
+  @Label("Kind")
+  String kind;
+
+  @Label("Priority")
+  int priority;
+
+  @Label("Scheduling Rule")
+  String rule;
+
+  void setJob(JobExecutionRecord record) {
+    title = record.getTitle();
+    family = String.valueOf(record.getFamily());
+    kind = String.valueOf(record.getKind());
+    priority = record.getPriority();
+    rule = record.getSchedulingRule() != null ? String.valueOf(record.getSchedulingRule()) : null;
+  }
+}
@@ -0,0 +1,113 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Tobias Baumann.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Tobias Baumann - initial API and implementation
+ ******************************************************************************/
+package de.baumato.jobs.builder.jfr;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.core.runtime.IStatus;
+
+import de.baumato.jobs.builder.JobExecutionRecord;
+import de.baumato.jobs.builder.JobMetricsListener;
+
+/**
+ * Metrics listener committing the flight recorder events of the jobs. Events disabled in the
+ * recording's settings are not populated. Rule waits are only emitted if they exceed a threshold of
+ * 10 milliseconds, which can be changed by the system property
+ * <code>de.baumato.jobs.builder.jfr.ruleWaitThresholdMillis</code>.
+ * <p>
+ * The scheduling rules are checked by the job manager, so the wait for a rule is derived from the
+ * queue time of a job with a rule. Jobs which have waited for a permit of their concurrency limit
+ * are left out, since their queue time is mostly the wait for the permit.
+ */
+final class JobEventEmitter implements JobMetricsListener {
+
+  /**
+   * the minimum wait of a job with a scheduling rule emitted as rule wait, shorter waits are normal
+   * queueing and no sign of rule contention
+   */
+  static final long RULE_WAIT_THRESHOLD_NANOS = TimeUnit.MILLISECONDS.toNanos(
+      Long.getLong("de.baumato.jobs.builder.jfr.ruleWaitThresholdMillis", 10));
+
+  /** the event spanning the run of the job running in the current thread */
+  private final ThreadLocal<JobFinishedEvent> runningJob = new ThreadLocal<JobFinishedEvent>();
+
+  @Override
+  public void jobScheduled(JobExecutionRecord record) {
+    JobScheduledEvent event = new JobScheduledEvent();
+    if (event.isEnabled()) {
+      event.setJob(record);
+      event.delay = record.getDelayNanos();
+      event.commit();
+    }
+  }
+
+  @Override
+  public void jobStarted(JobExecutionRecord record) {
+    JobStartedEvent event = new JobStartedEvent();
+    if (event.isEnabled()) {
+      event.setJob(record);
+      event.queueTime = record.getQueueNanos();
+      event.commit();
+    }
+    if (isRuleWait(record)) {
+      RuleWaitEvent ruleWait = new RuleWaitEvent();
+      if (ruleWait.isEnabled()) {
+        ruleWait.setJob(record);
+        ruleWait.waitTime = record.getQueueNanos();
+        ruleWait.commit();
+      }
+    }
+    JobFinishedEvent finished = new JobFinishedEvent();
+    if (finished.isEnabled()) {
+      finished.begin();
+      runningJob.set(finished);
+    }
+  }
+
+  @Override
+  public void jobFinished(JobExecutionRecord record) {
+    JobFinishedEvent event = null;
+    if (record.hasStarted()) {
+      event = runningJob.get();
+      runningJob.remove();
+    }
+    if (event == null) {
+      event = new JobFinishedEvent();
+    }
+    if (event.shouldCommit()) {
+      event.setJob(record);
+      event.severity = severityOf(record.getSeverity());
+      event.commit();
+    }
+  }
+
+  private static boolean isRuleWait(JobExecutionRecord record) {
+    return record.getSchedulingRule() != null && !record.isHeldByConcurrencyLimit()
+        && record.getQueueNanos() >= RULE_WAIT_THRESHOLD_NANOS;
+  }
+
+  private static String severityOf(int severity) {
+    switch (severity) {
+      case IStatus.OK:
+        return "OK";
+      case IStatus.INFO:
+        return "INFO";
+      case IStatus.WARNING:
+        return "WARNING";
+      case IStatus.ERROR:
+        return "ERROR";
+      case IStatus.CANCEL:
+        return "CANCEL";
+      default:
+        return String.valueOf(severity);
+    }
+  }
+}
@@ -0,0 +1,25 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Tobias Baumann.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Tobias Baumann - initial API and implementation
+ ******************************************************************************/
+package de.baumato.jobs.builder.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("de.baumato.jobs.builder.JobFinished")
+@Label("Job Finished")
+@Description("A job has finished, the event spans its run. Jobs canceled before they have "
+    + "started have no duration.")
+final class JobFinishedEvent extends JobEvent {
+
+  @Label("Severity")
+  String severity;
+}
@@ -0,0 +1,101 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Tobias Baumann.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Tobias Baumann - initial API and implementation
+ ******************************************************************************/
+package de.baumato.jobs.builder.jfr;
+
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.FlightRecorderListener;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+
+import de.baumato.jobs.builder.Jobs;
+
+/**
+ * <p>
+ * Emits Java Flight Recorder events for the life cycle of jobs built by the job builder:
+ * <code>JobScheduled</code>, <code>JobStarted</code>, <code>JobFinished</code> (spanning the run of
+ * the job) and <code>RuleWait</code> (a job with a scheduling rule waiting longer than a threshold
+ * to start), in the category "Eclipse Jobs". The events carry title, family, kind, priority and
+ * scheduling rule of the job.
+ * <p>
+ * The events are fed by a metrics listener of the job builder, which is registered only while a
+ * recording is running. So jobs do not record any metrics as long as no recording is running.
+ * <p>
+ * Installed automatically while this bundle is active. The bundle is not started by anyone else,
+ * it has to be started by the product or launch configuration, or by calling {@link #install()}.
+ */
+public final class JobFlightRecorder {
+
+  private static final FlightRecorderListener RECORDING_LISTENER = new FlightRecorderListener() {
+    @Override
+    public void recorderInitialized(FlightRecorder recorder) {
+      update();
+    }
+
+    @Override
+    public void recordingStateChanged(Recording recording) {
+      update();
+    }
+  };
+
+  private static boolean installed = false;
+  private static JobEventEmitter emitter;
+
+  private JobFlightRecorder() {
+    // static methods only
+  }
+
+  /**
+   * Starts emitting events of jobs whenever a recording is running.
+   */
+  public static synchronized void install() {
+    if (!installed) {
+      installed = true;
+      FlightRecorder.addListener(RECORDING_LISTENER);
+      if (FlightRecorder.isInitialized()) {
+        update();
+      }
+    }
+  }
+
+  /**
+   * Stops emitting events of jobs.
+   */
+  public static synchronized void uninstall() {
+    if (installed) {
+      installed = false;
+      FlightRecorder.removeListener(RECORDING_LISTENER);
+      update();
+    }
+  }
+
+  private static synchronized void update() {
+    boolean emit = installed && isRecording();
+    if (emit && emitter == null) {
+      emitter = new JobEventEmitter();
+      Jobs.addMetricsListener(emitter);
+    } else if (!emit && emitter != null) {
+      Jobs.removeMetricsListener(emitter);
+      emitter = null;
+    }
+  }
+
+  private static boolean isRecording() {
+    if (!FlightRecorder.isInitialized()) {
+      return false;
+    }
+    for (Recording recording : FlightRecorder.getFlightRecorder().getRecordings()) {
+      if (recording.getState() == RecordingState.RUNNING) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,26 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Tobias Baumann.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Tobias Baumann - initial API and implementation
+ ******************************************************************************/
+package de.baumato.jobs.builder.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+@Name("de.baumato.jobs.builder.JobScheduled")
+@Label("Job Scheduled")
+@Description("A job has been scheduled")
+final class JobScheduledEvent extends JobEvent {
+
+  @Label("Delay")
+  @Timespan(Timespan.NANOSECONDS)
+  long delay;
+}
@@ -0,0 +1,27 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Tobias Baumann.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Tobias Baumann - initial API and implementation
+ ******************************************************************************/
+package de.baumato.jobs.builder.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+@Name("de.baumato.jobs.builder.JobStarted")
+@Label("Job Started")
+@Description("A job has started running")
+final class JobStartedEvent extends JobEvent {
+
+  @Label("Queue Time")
+  @Description("Time the job has waited to be run after its scheduling delay")
+  @Timespan(Timespan.NANOSECONDS)
+  long queueTime;
+}
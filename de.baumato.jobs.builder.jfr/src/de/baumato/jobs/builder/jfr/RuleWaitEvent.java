@@ -0,0 +1,28 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Tobias Baumann.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Tobias Baumann - initial API and implementation
+ ******************************************************************************/
+package de.baumato.jobs.builder.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+@Name("de.baumato.jobs.builder.RuleWait")
+@Label("Scheduling Rule Wait")
+@Description("A job with a scheduling rule has waited longer than the rule wait threshold from "
+    + "the end of its scheduling delay until its start, likely for conflicting jobs. Includes the "
+    + "wait for a worker thread, jobs waiting for a concurrency limit are not reported.")
+final class RuleWaitEvent extends JobEvent {
+
+  @Label("Wait Time")
+  @Timespan(Timespan.NANOSECONDS)
+  long waitTime;
+}
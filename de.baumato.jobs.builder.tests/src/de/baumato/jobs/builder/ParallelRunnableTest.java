@@ -0,0 +1,91 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Tobias Baumann.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Tobias Baumann - initial API and implementation
+ ******************************************************************************/
+package de.baumato.jobs.builder;
+
+import static org.junit.Assert.assertEquals;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.jface.operation.IRunnableWithProgress;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class ParallelRunnableTest {
+
+  private static final double DELTA = 0.001;
+
+  @Test
+  public void forwardsProgressOfEachWorkedCall() throws Exception {
+    final RecordingMonitor parent = new RecordingMonitor();
+    final List<Double> progressAfterWorked = Lists.newArrayList();
+    IRunnableWithProgress subtask = new IRunnableWithProgress() {
+      @Override
+      public void run(IProgressMonitor monitor) throws InvocationTargetException,
+          InterruptedException {
+        monitor.beginTask("subtask", 100);
+        for (int i = 0; i < 100; i++) {
+          monitor.worked(1);
+          progressAfterWorked.add(parent.worked);
+        }
+        monitor.done();
+      }
+    };
+
+    new ParallelRunnable("title", Collections.singletonList(subtask)).run(parent);
+
+    assertEquals(1000, parent.totalWork);
+    for (int i = 0; i < 100; i++) {
+      assertEquals((i + 1) * 10.0, progressAfterWorked.get(i), DELTA);
+    }
+    assertEquals(1000.0, parent.worked, DELTA);
+  }
+
+  @Test
+  public void completesShareOfSubtaskOnDone() throws Exception {
+    RecordingMonitor parent = new RecordingMonitor();
+    List<IRunnableWithProgress> subtasks = Lists.newArrayList();
+    for (int i = 0; i < 4; i++) {
+      subtasks.add(new IRunnableWithProgress() {
+        @Override
+        public void run(IProgressMonitor monitor) throws InvocationTargetException,
+            InterruptedException {
+          monitor.beginTask("subtask", 10);
+          monitor.worked(3);
+        }
+      });
+    }
+
+    new ParallelRunnable("title", subtasks).run(parent);
+
+    assertEquals(4000.0, parent.worked, DELTA);
+  }
+
+  private static final class RecordingMonitor extends NullProgressMonitor {
+
+    private int totalWork;
+    private double worked;
+
+    @Override
+    public void beginTask(String name, int totalWork) {
+      this.totalWork = totalWork;
+    }
+
+    @Override
+    public void internalWorked(double work) {
+      worked += work;
+    }
+  }
+}
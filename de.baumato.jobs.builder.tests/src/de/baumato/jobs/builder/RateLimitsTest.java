@@ -0,0 +1,75 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Tobias Baumann.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Tobias Baumann - initial API and implementation
+ ******************************************************************************/
+package de.baumato.jobs.builder;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import de.baumato.jobs.builder.RateLimits.TokenBucket;
+
+public class RateLimitsTest {
+
+  private static final long NOW = TimeUnit.SECONDS.toNanos(100);
+  private static final long INTERVAL = millis(100);
+
+  @Test
+  public void spacesJobsWithTheSameDelayByTheInterval() {
+    TokenBucket bucket = new TokenBucket(10, 1, NOW);
+    for (int i = 0; i < 8; i++) {
+      assertEquals(millis(1000) + i * INTERVAL, bucket.reserve(NOW, millis(1000)));
+    }
+  }
+
+  @Test
+  public void doesNotHoldBackImmediateJobsBehindDelayedOnes() {
+    TokenBucket bucket = new TokenBucket(10, 1, NOW);
+    for (int i = 0; i < 8; i++) {
+      bucket.reserve(NOW, millis(1000));
+    }
+    assertEquals(0, bucket.reserve(NOW, 0));
+    assertEquals(INTERVAL, bucket.reserve(NOW, 0));
+    assertEquals(2 * INTERVAL, bucket.reserve(NOW, 0));
+  }
+
+  @Test
+  public void doesNotLetEarlierJobsTakeTheTokensOfDelayedOnes() {
+    TokenBucket bucket = new TokenBucket(10, 1, NOW);
+    assertEquals(millis(150), bucket.reserve(NOW, millis(150)));
+    assertEquals(0, bucket.reserve(NOW, 0));
+    // a start at 100 ms would leave the job booked at 150 ms without a token
+    assertEquals(millis(250), bucket.reserve(NOW, 0));
+  }
+
+  @Test
+  public void letsAtMostBurstJobsRunWithoutDelay() {
+    TokenBucket bucket = new TokenBucket(10, 3, NOW);
+    assertEquals(0, bucket.reserve(NOW, 0));
+    assertEquals(0, bucket.reserve(NOW, 0));
+    assertEquals(0, bucket.reserve(NOW, 0));
+    assertEquals(INTERVAL, bucket.reserve(NOW, 0));
+  }
+
+  @Test
+  public void refillsTokensOnlyUpToTheCurrentTime() {
+    TokenBucket bucket = new TokenBucket(10, 2, NOW);
+    bucket.reserve(NOW, 0);
+    bucket.reserve(NOW, 0);
+    assertEquals(millis(50), bucket.reserve(NOW + millis(50), 0));
+    assertEquals(millis(100), bucket.reserve(NOW + millis(100), 0));
+  }
+
+  private static long millis(long millis) {
+    return TimeUnit.MILLISECONDS.toNanos(millis);
+  }
+}
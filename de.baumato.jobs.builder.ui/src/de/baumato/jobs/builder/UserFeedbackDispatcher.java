@@ -0,0 +1,80 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Tobias Baumann.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Tobias Baumann - initial API and implementation
+ ******************************************************************************/
+package de.baumato.jobs.builder;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.eclipse.core.runtime.ISafeRunnable;
+import org.eclipse.core.runtime.SafeRunner;
+import org.eclipse.swt.widgets.Display;
+
+/**
+ * <p>
+ * Runs immediate user feedback in the UI thread. Instead of one <code>asyncExec</code> per finished
+ * job, pending feedback is collected and run by a single <code>asyncExec</code>. If running the
+ * feedback exceeds the time budget (see {@link Jobs#setUserFeedbackTimeBudget(long,
+ * java.util.concurrent.TimeUnit)}), the rest is run in the next frame, so the UI keeps responding
+ * when many short jobs finish at once.
+ */
+final class UserFeedbackDispatcher implements Runnable {
+
+  /** the delay before the remaining feedback is run, if the time budget has been exceeded */
+  private static final int FRAME_MILLIS = 16;
+
+  private final Display display;
+  private final Queue<Runnable> pendingFeedback = new ConcurrentLinkedQueue<Runnable>();
+  private final AtomicBoolean drainScheduled = new AtomicBoolean();
+
+  UserFeedbackDispatcher(Display display) {
+    this.display = display;
+  }
+
+  void dispatch(Runnable feedback) {
+    pendingFeedback.add(feedback);
+    if (drainScheduled.compareAndSet(false, true)) {
+      display.asyncExec(this);
+    }
+  }
+
+  @Override
+  public void run() {
+    long deadline = System.nanoTime() + JobPresentation.userFeedbackTimeBudgetNanos;
+    Runnable feedback;
+    while ((feedback = pendingFeedback.poll()) != null) {
+      runSafely(feedback);
+      if (System.nanoTime() - deadline > 0 && !pendingFeedback.isEmpty()) {
+        display.timerExec(FRAME_MILLIS, this);
+        return;
+      }
+    }
+    drainScheduled.set(false);
+    // feedback added after the queue has been found empty, but before the flag was reset
+    if (!pendingFeedback.isEmpty() && drainScheduled.compareAndSet(false, true)) {
+      display.asyncExec(this);
+    }
+  }
+
+  private void runSafely(final Runnable feedback) {
+    SafeRunner.run(new ISafeRunnable() {
+      @Override
+      public void run() throws Exception {
+        feedback.run();
+      }
+
+      @Override
+      public void handleException(Throwable exception) {
+        // already logged by SafeRunner
+      }
+    });
+  }
+}
@@ -0,0 +1,114 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Tobias Baumann.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Tobias Baumann - initial API and implementation
+ ******************************************************************************/
+package de.baumato.jobs.builder;
+
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.jface.action.Action;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.ui.progress.IProgressConstants;
+
+/**
+ * Presents jobs in the workbench's progress view and gives user feedback in the UI thread. Loaded
+ * by {@link JobPresentation} if this fragment is installed.
+ */
+final class WorkbenchJobPresentation extends JobPresentation {
+
+  private volatile UserFeedbackDispatcher dispatcher;
+
+  @Override
+  void jobStarting(InternalJob job) {
+    applyImageIfAvailable(job);
+    updateErrorHandlingBehaviour(job);
+  }
+
+  @Override
+  void jobFinished(InternalJob job, IStatus jobResult) {
+    updateErrorHandlingBehaviour(job);
+    performUserFeedback(job, jobResult);
+  }
+
+  private void applyImageIfAvailable(InternalJob job) {
+    if (job.getTemplate().image != null) {
+      job.setProperty(IProgressConstants.ICON_PROPERTY, job.getTemplate().image);
+    }
+  }
+
+  private void updateErrorHandlingBehaviour(InternalJob job) {
+    job.setProperty(IProgressConstants.NO_IMMEDIATE_ERROR_PROMPT_PROPERTY,
+        Boolean.valueOf(!shouldShowErrorPromptImmediately(job)));
+  }
+
+  private boolean shouldShowErrorPromptImmediately(InternalJob job) {
+    UserFeedback userFeedback = job.getTemplate().userFeedback;
+    return userFeedback == null || userFeedback.performFeedbackImmediately
+        || jobRunsInBackground(job);
+  }
+
+  private void performUserFeedback(InternalJob job, IStatus jobResult) {
+    UserFeedback userFeedback = job.getTemplate().userFeedback;
+    if (userFeedback != null) {
+      if (isModal(job) || userFeedback.performFeedbackImmediately) {
+        performUserFeedbackImmediately(userFeedback, jobResult);
+      } else {
+        allowUserToGetFeedbackLater(job, userFeedback, jobResult);
+      }
+    }
+  }
+
+  private boolean jobRunsInBackground(InternalJob job) {
+    return !isModal(job);
+  }
+
+  /**
+   * Checks if the job is currently in modal mode, means the user decided to NOT run it in
+   * background.
+   */
+  private boolean isModal(InternalJob job) {
+    Boolean isModal = (Boolean) job.getProperty(IProgressConstants.PROPERTY_IN_DIALOG);
+    return isModal == null ? false : isModal.booleanValue();
+  }
+
+  private void performUserFeedbackImmediately(final UserFeedback userFeedback,
+      final IStatus jobResult) {
+    getDispatcher().dispatch(new Runnable() {
+      @Override
+      public void run() {
+        userFeedback.performUserFeedback(jobResult, true);
+      }
+    });
+  }
+
+  private UserFeedbackDispatcher getDispatcher() {
+    UserFeedbackDispatcher current = dispatcher;
+    if (current == null) {
+      synchronized (this) {
+        current = dispatcher;
+        if (current == null) {
+          current = new UserFeedbackDispatcher(Display.getDefault());
+          dispatcher = current;
+        }
+      }
+    }
+    return current;
+  }
+
+  private void allowUserToGetFeedbackLater(InternalJob job, final UserFeedback userFeedback,
+      final IStatus jobResult) {
+    Action userFeedbackAction = new Action() {
+      @Override
+      public void run() {
+        userFeedback.performUserFeedback(jobResult, false);
+      }
+    };
+    job.setProperty(IProgressConstants.KEEP_PROPERTY, Boolean.TRUE);
+    job.setProperty(IProgressConstants.ACTION_PROPERTY, userFeedbackAction);
+  }
+}
@@ -0,0 +1,61 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Tobias Baumann.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Tobias Baumann - initial API and implementation
+ ******************************************************************************/
+package de.baumato.jobs.builder;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.Callable;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.jface.operation.IRunnableWithProgress;
+
+import com.google.common.base.Throwables;
+
+/**
+ * Lets a <tt>Callable</tt> act as a <tt>IRunnableWithProgress</tt> with unknown amount of work. The
+ * computed value is kept until it is requested.
+ */
+class CallableAdapter<V> implements IRunnableWithProgress {
+
+  private final String title;
+  private final Callable<V> callable;
+  private volatile V value;
+
+  CallableAdapter(String title, Callable<V> callable) {
+    this.title = checkNotNull(title);
+    this.callable = checkNotNull(callable);
+  }
+
+  @Override
+  public void run(IProgressMonitor monitor) throws InvocationTargetException,
+      InterruptedException {
+    value = null;
+    try {
+      if (monitor != null) {
+        monitor.beginTask(title, IProgressMonitor.UNKNOWN);
+      }
+      value = callable.call();
+    } catch (Exception e) {
+      Throwables.propagateIfPossible(e);
+      Throwables.propagateIfInstanceOf(e, InterruptedException.class);
+      throw new InvocationTargetException(e);
+    } finally {
+      if (monitor != null) {
+        monitor.done();
+      }
+    }
+  }
+
+  V getValue() {
+    return value;
+  }
+}
@@ -0,0 +1,147 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Tobias Baumann.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Tobias Baumann - initial API and implementation
+ ******************************************************************************/
+package de.baumato.jobs.builder;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+
+/**
+ * <p>
+ * Lets plain runnables observe the cancellation of the job they run in. A runnable gets the token
+ * of its job using {@link #current()} and polls it, e.g. between the items it processes:
+ *
+ * <pre>
+ * CancellationToken token = CancellationToken.current();
+ * for (File file : files) {
+ *   token.throwIfCanceled();
+ *   process(file);
+ * }
+ * </pre>
+ * <p>
+ * A job built with {@link JobBuilder#interruptOnCancel()} additionally interrupts its thread when
+ * it is canceled, which stops blocking operations like <code>Thread.sleep()</code>.
+ */
+public class CancellationToken {
+
+  /** the token of code not running in a job, it is never canceled */
+  private static final CancellationToken NONE = new CancellationToken(null, false);
+
+  private static final ThreadLocal<CancellationToken> CURRENT =
+      new ThreadLocal<CancellationToken>();
+
+  private final IProgressMonitor monitor;
+  private final boolean interruptOnCancel;
+  private volatile boolean canceled = false;
+  private Thread runner;
+  private boolean interrupted = false;
+
+  CancellationToken(IProgressMonitor monitor, boolean interruptOnCancel) {
+    this.monitor = monitor;
+    this.interruptOnCancel = interruptOnCancel;
+  }
+
+  /**
+   * Returns the token of the job running in the current thread.
+   *
+   * @return the token, never null. If the current thread does not run a job, a token that is never
+   *         canceled is returned.
+   */
+  public static CancellationToken current() {
+    CancellationToken token = CURRENT.get();
+    return token != null ? token : NONE;
+  }
+
+  /**
+   * Checks if the job has been canceled.
+   *
+   * @return <code>true</code> if the job has been canceled
+   */
+  public boolean isCanceled() {
+    return canceled || (monitor != null && monitor.isCanceled());
+  }
+
+  /**
+   * Throws an <code>OperationCanceledException</code> if the job has been canceled. The job then
+   * returns a cancel {@code IStatus}.
+   *
+   * @throws OperationCanceledException if the job has been canceled
+   */
+  public void throwIfCanceled() {
+    if (isCanceled()) {
+      throw new OperationCanceledException();
+    }
+  }
+
+  /**
+   * Makes this the token of the current thread, which runs the job. The thread is interrupted if
+   * the job gets canceled and it should be interrupted.
+   *
+   * @return the previous token of the current thread, to be passed to {@link #uninstall}
+   */
+  CancellationToken install() {
+    synchronized (this) {
+      runner = Thread.currentThread();
+    }
+    return setCurrent(this);
+  }
+
+  /**
+   * Restores the given previous token of the current thread. An interrupt caused by canceling this
+   * token is cleared, so it does not affect the code running next in the thread.
+   */
+  void uninstall(CancellationToken previous) {
+    boolean clearInterrupt;
+    synchronized (this) {
+      runner = null;
+      clearInterrupt = interrupted;
+    }
+    if (clearInterrupt) {
+      Thread.interrupted();
+    }
+    setCurrent(previous);
+  }
+
+  /**
+   * Sets the token of the current thread without making the thread the runner of the job, e.g. for
+   * helper threads of a job.
+   *
+   * @return the previous token of the current thread
+   */
+  static CancellationToken setCurrent(CancellationToken token) {
+    CancellationToken previous = CURRENT.get();
+    if (token != null) {
+      CURRENT.set(token);
+    } else {
+      CURRENT.remove();
+    }
+    return previous;
+  }
+
+  void cancel() {
+    cancel(interruptOnCancel);
+  }
+
+  /**
+   * Cancels the token and interrupts the running thread if requested, regardless of the job's
+   * configuration, e.g. when the job has timed out.
+   */
+  void cancel(boolean interrupt) {
+    canceled = true;
+    if (interrupt) {
+      synchronized (this) {
+        if (runner != null) {
+          runner.interrupt();
+          interrupted = true;
+        }
+      }
+    }
+  }
+}
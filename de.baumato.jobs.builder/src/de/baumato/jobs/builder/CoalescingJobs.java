@@ -0,0 +1,106 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Tobias Baumann.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Tobias Baumann - initial API and implementation
+ ******************************************************************************/
+package de.baumato.jobs.builder;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.jobs.IJobChangeEvent;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.core.runtime.jobs.JobChangeAdapter;
+import org.eclipse.jface.operation.IRunnableWithProgress;
+
+/**
+ * Keeps one job per coalesce key. Scheduling a runnable for a key replaces the runnable the job of
+ * the key will run. The job of a key is released as soon as it finished without a pending runnable
+ * or got canceled, also if it is canceled before it ran. A cancellation drops the pending runnable.
+ * The job is built from the template of the request creating it, the templates of later requests
+ * for the key are ignored. The job is scheduled directly, bypassing rate limits.
+ *
+ * @see JobBuilder#coalesceBy(Object, long, java.util.concurrent.TimeUnit)
+ */
+final class CoalescingJobs {
+
+  private static final ConcurrentMap<Object, CoalescedJob> JOBS =
+      new ConcurrentHashMap<Object, CoalescedJob>();
+
+  private CoalescingJobs() {}
+
+  static Job schedule(JobTemplate template, IRunnableWithProgress runnable, long delayMillis) {
+    long delay = template.coalesceWindowMillis + delayMillis;
+    while (true) {
+      CoalescedJob coalescedJob = JOBS.get(template.coalesceKey);
+      if (coalescedJob == null) {
+        coalescedJob = new CoalescedJob(template);
+        CoalescedJob existing = JOBS.putIfAbsent(template.coalesceKey, coalescedJob);
+        if (existing != null) {
+          coalescedJob = existing;
+        }
+      }
+      if (coalescedJob.offer(runnable, delay)) {
+        return coalescedJob.job;
+      }
+      // the job has just been released, try again with a new one
+    }
+  }
+
+  private static final class CoalescedJob extends JobChangeAdapter implements
+      IRunnableWithProgress {
+
+    private final Object key;
+    private final Job job;
+    private final AtomicReference<IRunnableWithProgress> latest =
+        new AtomicReference<IRunnableWithProgress>();
+    private boolean released = false;
+
+    CoalescedJob(JobTemplate template) {
+      this.key = template.coalesceKey;
+      this.job = new InternalJob(template, this);
+      this.job.addJobChangeListener(this);
+    }
+
+    synchronized boolean offer(IRunnableWithProgress runnable, long delayMillis) {
+      if (released) {
+        return false;
+      }
+      latest.set(runnable);
+      // has no effect if the job is already waiting or sleeping, so the window is not extended
+      job.schedule(delayMillis);
+      return true;
+    }
+
+    @Override
+    public void run(IProgressMonitor monitor) throws InvocationTargetException,
+        InterruptedException {
+      IRunnableWithProgress runnable = latest.getAndSet(null);
+      if (runnable != null) {
+        runnable.run(monitor);
+      }
+    }
+
+    @Override
+    public synchronized void done(IJobChangeEvent event) {
+      // a canceled job does not run the pending runnable, so it must not keep it (and the key's
+      // entry) forever; unless an offer has already scheduled the job again
+      if (event.getResult().getSeverity() == IStatus.CANCEL && job.getState() == Job.NONE) {
+        latest.set(null);
+      }
+      if (latest.get() == null) {
+        released = true;
+        JOBS.remove(key, this);
+      }
+    }
+  }
+}
@@ -0,0 +1,189 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Tobias Baumann.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Tobias Baumann - initial API and implementation
+ ******************************************************************************/
+package de.baumato.jobs.builder;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.core.runtime.jobs.IJobChangeEvent;
+import org.eclipse.core.runtime.jobs.JobChangeAdapter;
+
+import com.google.common.base.Objects;
+
+/**
+ * Allows at most a given number of jobs with the same limit name to run concurrently. In contrast
+ * to a scheduling rule the jobs exceeding the limit sleep in the job manager and are queued here
+ * until a running job is done, then they are woken up. So the job manager does not need to check
+ * them for conflicts each time it looks for a job to run, but they are still found by family
+ * queries of the job manager and can be joined and canceled. A canceled sleeping job is removed
+ * from the queue. Waking them up by hand, also with <code>IJobManager.wakeUp(family)</code> for
+ * their family, bypasses the limit.
+ * <p>
+ * A job holds its permit from being scheduled (including a scheduling delay) until it is done or
+ * canceled. A job which is retried keeps its permit until its last attempt is done. A periodic job
+ * applies for a new permit for each run.
+ *
+ * @see JobBuilder#maxConcurrency(String, int)
+ */
+final class ConcurrencyLimit {
+
+  /** the delay of jobs sleeping until they get a permit, long enough to never elapse */
+  static final long PENDING_DELAY_MILLIS = TimeUnit.DAYS.toMillis(365L * 100);
+
+  private static final ConcurrentMap<String, ConcurrencyLimit> LIMITS =
+      new ConcurrentHashMap<String, ConcurrencyLimit>();
+
+  private final String name;
+  private final Queue<PendingJob> pendingJobs = new ArrayDeque<PendingJob>();
+  private int permits;
+  private int runningJobs = 0;
+
+  private ConcurrencyLimit(String name, int permits) {
+    this.name = name;
+    this.permits = permits;
+  }
+
+  /**
+   * Returns the limit with the given name. If it already exists its number of permits is updated.
+   */
+  static ConcurrencyLimit named(String name, int permits) {
+    checkNotNull(name, "Given name is null.");
+    checkArgument(permits > 0, "Given number of concurrent jobs is not positive.");
+    ConcurrencyLimit limit = LIMITS.get(name);
+    if (limit == null) {
+      limit = new ConcurrencyLimit(name, permits);
+      ConcurrencyLimit existing = LIMITS.putIfAbsent(name, limit);
+      if (existing == null) {
+        return limit;
+      }
+      limit = existing;
+    }
+    limit.updatePermits(permits);
+    return limit;
+  }
+
+  void schedule(InternalJob job, long delayMillis) {
+    PendingJob pendingJob = new PendingJob(job, delayMillis);
+    job.addJobChangeListener(pendingJob);
+    boolean granted;
+    synchronized (this) {
+      granted = runningJobs < permits;
+      if (granted) {
+        runningJobs++;
+        pendingJob.granted = true;
+      } else {
+        pendingJobs.add(pendingJob);
+      }
+    }
+    if (granted) {
+      job.scheduleWithRateLimit(delayMillis);
+      return;
+    }
+    // scheduled outside of the lock, so the job manager's listeners do not run while holding it
+    job.schedule(PENDING_DELAY_MILLIS);
+    boolean grantedMeanwhile;
+    synchronized (this) {
+      pendingJob.sleeping = true;
+      grantedMeanwhile = pendingJob.granted;
+    }
+    if (grantedMeanwhile) {
+      // the permit has been granted before the job slept, so it has not been woken up yet
+      pendingJob.wakeUp();
+    }
+  }
+
+  private void updatePermits(int newPermits) {
+    synchronized (this) {
+      if (permits == newPermits) {
+        return;
+      }
+      permits = newPermits;
+    }
+    scheduleNextJobs();
+  }
+
+  private void release() {
+    synchronized (this) {
+      runningJobs--;
+    }
+    scheduleNextJobs();
+  }
+
+  private void scheduleNextJobs() {
+    while (true) {
+      PendingJob next;
+      synchronized (this) {
+        if (runningJobs >= permits || pendingJobs.isEmpty()) {
+          return;
+        }
+        next = pendingJobs.poll();
+        next.granted = true;
+        runningJobs++;
+        if (!next.sleeping) {
+          // woken up by the thread scheduling it as soon as it sleeps
+          continue;
+        }
+      }
+      next.wakeUp();
+    }
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(this).add("name", name).add("permits", permits).toString();
+  }
+
+  private final class PendingJob extends JobChangeAdapter {
+
+    private final InternalJob job;
+    private final long delayMillis;
+    /** guarded by the limit */
+    boolean granted = false;
+    /** guarded by the limit, true as soon as the job has been scheduled to sleep for a permit */
+    boolean sleeping = false;
+
+    PendingJob(InternalJob job, long delayMillis) {
+      this.job = job;
+      this.delayMillis = delayMillis;
+    }
+
+    void wakeUp() {
+      job.wakeUpWithDelay(RateLimits.reserve(job.getTemplate().family, delayMillis));
+    }
+
+    @Override
+    public void done(IJobChangeEvent event) {
+      if (InternalJob.isRetrying(event.getResult())) {
+        // the permit is kept for the next attempt
+        return;
+      }
+      job.removeJobChangeListener(this);
+      boolean holdsPermit;
+      synchronized (ConcurrencyLimit.this) {
+        // a job canceled while sleeping for a permit does not hold one
+        holdsPermit = granted || !pendingJobs.remove(this);
+      }
+      if (holdsPermit) {
+        release();
+      }
+      long nextRunDelayMillis = job.takeNextRunDelay();
+      if (nextRunDelayMillis >= 0) {
+        ConcurrencyLimit.this.schedule(job, nextRunDelayMillis);
+      }
+    }
+  }
+}
@@ -0,0 +1,314 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Tobias Baumann.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Tobias Baumann - initial API and implementation
+ ******************************************************************************/
+package de.baumato.jobs.builder;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.ISchedulingRule;
+import org.eclipse.jface.operation.IRunnableWithProgress;
+
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.AbstractFuture;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * <p>
+ * Executes jobs using <code>java.util.concurrent</code> only, without the Eclipse job manager. It
+ * starts quickly and needs no OSGi framework, so it is meant for headless processes.
+ * <p>
+ * Like the job manager it runs waiting jobs ordered by priority (and in scheduling order for the
+ * same priority), it does not run jobs with conflicting scheduling rules (e.g.
+ * {@link JobBuilder#runsNotConcurrently()}) at the same time and it cancels jobs by family.
+ * Timeouts, interrupts on cancel, throttled progress and the {@link CancellationToken} work as for
+ * Eclipse jobs. UI related settings (job kind, image, user feedback) are ignored.
+ */
+public class ConcurrentJobExecutor implements JobExecutor {
+
+  private final int threads;
+  private final ExecutorService workers;
+  private final ScheduledExecutorService timer;
+  private final Object lock = new Object();
+  private final NavigableSet<Task> waitingTasks = new TreeSet<Task>(new TaskOrder());
+  private final List<Task> runningTasks = Lists.newArrayList();
+  private long sequence = 0;
+
+  /**
+   * Constructs a new executor running as many jobs concurrently as processors are available.
+   */
+  public ConcurrentJobExecutor() {
+    this(Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Constructs a new executor.
+   *
+   * @param threads the maximum number of jobs running concurrently
+   */
+  public ConcurrentJobExecutor(int threads) {
+    checkArgument(threads > 0, "Given number of threads is not positive.");
+    this.threads = threads;
+    this.workers = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+        .setNameFormat("JobBuilder worker %d").setDaemon(true).build());
+    this.timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+        .setNameFormat("JobBuilder timer").setDaemon(true).build());
+  }
+
+  @Override
+  public ListenableFuture<IStatus> execute(JobTemplate template, IRunnableWithProgress runnable,
+      long delayMillis) {
+    final Task task =
+        new Task(checkNotNull(template, "Given template is null."), checkNotNull(runnable,
+            "Given runnable is null."));
+    if (delayMillis > 0) {
+      timer.schedule(new Runnable() {
+        @Override
+        public void run() {
+          enqueue(task);
+        }
+      }, delayMillis, TimeUnit.MILLISECONDS);
+    } else {
+      enqueue(task);
+    }
+    return task.future;
+  }
+
+  @Override
+  public void cancel(Object family) {
+    List<Task> tasks = Lists.newArrayList();
+    synchronized (lock) {
+      for (Task task : waitingTasks) {
+        if (task.template.family.equals(family)) {
+          tasks.add(task);
+        }
+      }
+      for (Task task : runningTasks) {
+        if (task.template.family.equals(family)) {
+          tasks.add(task);
+        }
+      }
+    }
+    for (Task task : tasks) {
+      task.future.cancel(false);
+    }
+  }
+
+  /**
+   * Cancels all jobs and stops the threads of this executor.
+   */
+  public void shutdown() {
+    timer.shutdownNow();
+    List<Task> tasks;
+    synchronized (lock) {
+      tasks = Lists.newArrayList(waitingTasks);
+      tasks.addAll(runningTasks);
+    }
+    for (Task task : tasks) {
+      task.future.cancel(false);
+    }
+    workers.shutdown();
+  }
+
+  private void enqueue(Task task) {
+    synchronized (lock) {
+      if (task.future.isCancelled()) {
+        return;
+      }
+      task.sequence = sequence++;
+      waitingTasks.add(task);
+      dispatch();
+    }
+  }
+
+  /**
+   * Starts waiting tasks as long as threads are free, has to be called holding the lock.
+   */
+  private void dispatch() {
+    Iterator<Task> candidates = waitingTasks.iterator();
+    while (runningTasks.size() < threads && candidates.hasNext()) {
+      Task candidate = candidates.next();
+      if (!conflictsWithRunningTask(candidate)) {
+        candidates.remove();
+        runningTasks.add(candidate);
+        workers.execute(candidate);
+      }
+    }
+  }
+
+  private boolean conflictsWithRunningTask(Task candidate) {
+    ISchedulingRule rule = candidate.template.schedulingRule;
+    if (rule == null) {
+      return false;
+    }
+    for (Task running : runningTasks) {
+      ISchedulingRule runningRule = running.template.schedulingRule;
+      if (runningRule != null && rule.isConflicting(runningRule)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void taskFinished(Task task) {
+    synchronized (lock) {
+      runningTasks.remove(task);
+      dispatch();
+    }
+  }
+
+  private void taskCanceled(Task task) {
+    synchronized (lock) {
+      if (waitingTasks.remove(task)) {
+        return;
+      }
+    }
+    task.cancel(task.template.interruptOnCancel);
+  }
+
+  private final class Task implements Runnable {
+
+    private final JobTemplate template;
+    private final IRunnableWithProgress runnable;
+    private final NullProgressMonitor monitor = new NullProgressMonitor();
+    private final TaskFuture future = new TaskFuture(this);
+    private long sequence;
+    private volatile CancellationToken cancellationToken;
+    private volatile boolean timedOut = false;
+
+    Task(JobTemplate template, IRunnableWithProgress runnable) {
+      this.template = template;
+      this.runnable = runnable;
+    }
+
+    @Override
+    public void run() {
+      if (future.isCancelled()) {
+        // canceled after it has been dispatched, its future is already done
+        taskFinished(this);
+        return;
+      }
+      IStatus result;
+      CancellationToken token = new CancellationToken(monitor, template.interruptOnCancel);
+      cancellationToken = token;
+      CancellationToken previousToken = token.install();
+      TimerWheel.Timeout timeout = startTimeout();
+      try {
+        runnable.run(wrapMonitor());
+        result = monitor.isCanceled() ? Status.CANCEL_STATUS : template.okStatus;
+      } catch (InterruptedException e) {
+        result = InternalJob.createCancelStatus(template.title, e);
+      } catch (OperationCanceledException e) {
+        result = InternalJob.createCancelStatus(template.title, e);
+      } catch (Exception e) {
+        result = InternalJob.createErrorStatus(template.title, e);
+      } catch (Error e) {
+        future.failed(e);
+        throw e;
+      } finally {
+        if (timeout != null) {
+          timeout.cancel();
+        }
+        token.uninstall(previousToken);
+        taskFinished(this);
+      }
+      if (timedOut && !result.isOK()) {
+        result = InternalJob.createTimeoutStatus(template.title, template.timeoutNanos);
+      }
+      future.finished(result);
+    }
+
+    private IProgressMonitor wrapMonitor() {
+      if (template.progressIntervalNanos > 0) {
+        return new ThrottlingProgressMonitor(monitor, template.progressIntervalNanos,
+            TimeUnit.NANOSECONDS);
+      }
+      return monitor;
+    }
+
+    private TimerWheel.Timeout startTimeout() {
+      if (template.timeoutNanos <= 0) {
+        return null;
+      }
+      return TimerWheel.INSTANCE.schedule(new Runnable() {
+        @Override
+        public void run() {
+          timedOut = true;
+          cancel(true);
+        }
+      }, template.timeoutNanos);
+    }
+
+    void cancel(boolean interrupt) {
+      monitor.setCanceled(true);
+      CancellationToken token = cancellationToken;
+      if (token != null) {
+        token.cancel(interrupt);
+      }
+    }
+  }
+
+  private final class TaskFuture extends AbstractFuture<IStatus> {
+
+    private final Task task;
+
+    TaskFuture(Task task) {
+      this.task = task;
+    }
+
+    void finished(IStatus result) {
+      set(result);
+    }
+
+    void failed(Throwable t) {
+      setException(t);
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+      if (super.cancel(mayInterruptIfRunning)) {
+        taskCanceled(task);
+        return true;
+      }
+      return false;
+    }
+  }
+
+  /**
+   * Orders tasks by priority (lower values first like job priorities) and scheduling order.
+   */
+  private static final class TaskOrder implements Comparator<Task> {
+    @Override
+    public int compare(Task t1, Task t2) {
+      int p1 = t1.template.getPriority();
+      int p2 = t2.template.getPriority();
+      if (p1 != p2) {
+        return p1 < p2 ? -1 : 1;
+      }
+      return t1.sequence < t2.sequence ? -1 : (t1.sequence == t2.sequence ? 0 : 1);
+    }
+  }
+}
@@ -0,0 +1,138 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Tobias Baumann.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Tobias Baumann - initial API and implementation
+ ******************************************************************************/
+package de.baumato.jobs.builder;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Arrays;
+
+import org.eclipse.core.runtime.jobs.ISchedulingRule;
+
+import com.google.common.base.Objects;
+
+/**
+ * <p>
+ * Scheduling rule for a resource identified by a path like <code>"project/moduleA/file"</code>.
+ * A rule contains all rules whose path starts with its own path (segment-wise), and two rules
+ * conflict if one of them contains the other. So jobs working on disjoint subtrees run in parallel,
+ * while jobs working on overlapping subtrees run sequentially.
+ * <p>
+ * Since a rule contains the rules of its subtree, a job running with the rule
+ * <code>"project/moduleA"</code> may call <code>IJobManager.beginRule()</code> with the rule
+ * <code>"project/moduleA/file"</code>.
+ */
+public final class HierarchicalRule implements ISchedulingRule {
+
+  private static final String SEPARATOR = "/";
+
+  private final String[] segments;
+
+  /**
+   * Constructs a new rule.
+   *
+   * @param path the path of the resource, segments separated by '/', neither null nor empty
+   */
+  public HierarchicalRule(String path) {
+    this(split(path));
+  }
+
+  private HierarchicalRule(String[] segments) {
+    this.segments = segments;
+  }
+
+  private static String[] split(String path) {
+    checkNotNull(path, "Given path is null.");
+    String trimmed = path.trim();
+    while (trimmed.startsWith(SEPARATOR)) {
+      trimmed = trimmed.substring(1);
+    }
+    while (trimmed.endsWith(SEPARATOR)) {
+      trimmed = trimmed.substring(0, trimmed.length() - 1);
+    }
+    checkArgument(trimmed.length() > 0, "Given path is empty.");
+    return trimmed.split(SEPARATOR + "+");
+  }
+
+  /**
+   * Returns the rule for the given sub path of this rule's path.
+   *
+   * @param subPath the sub path, segments separated by '/'
+   * @return the rule of the child resource
+   */
+  public HierarchicalRule child(String subPath) {
+    String[] childSegments = split(subPath);
+    String[] newSegments = Arrays.copyOf(segments, segments.length + childSegments.length);
+    System.arraycopy(childSegments, 0, newSegments, segments.length, childSegments.length);
+    return new HierarchicalRule(newSegments);
+  }
+
+  @Override
+  public boolean contains(ISchedulingRule rule) {
+    if (rule == this) {
+      return true;
+    }
+    if (rule instanceof HierarchicalRule) {
+      return isPrefixOf((HierarchicalRule) rule);
+    }
+    return false;
+  }
+
+  @Override
+  public boolean isConflicting(ISchedulingRule rule) {
+    if (rule instanceof HierarchicalRule) {
+      HierarchicalRule that = (HierarchicalRule) rule;
+      return isPrefixOf(that) || that.isPrefixOf(this);
+    }
+    return false;
+  }
+
+  private boolean isPrefixOf(HierarchicalRule that) {
+    if (segments.length > that.segments.length) {
+      return false;
+    }
+    for (int i = segments.length - 1; i >= 0; i--) {
+      if (!segments[i].equals(that.segments[i])) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  public String getPath() {
+    StringBuilder path = new StringBuilder(segments[0]);
+    for (int i = 1; i < segments.length; i++) {
+      path.append(SEPARATOR).append(segments[i]);
+    }
+    return path.toString();
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (obj == this) {
+      return true;
+    }
+    if (obj instanceof HierarchicalRule) {
+      return Arrays.equals(segments, ((HierarchicalRule) obj).segments);
+    }
+    return false;
+  }
+
+  @Override
+  public int hashCode() {
+    return Arrays.hashCode(segments);
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(this).add("path", getPath()).toString();
+  }
+}
@@ -10,174 +10,450 @@
  ******************************************************************************/
 package de.baumato.jobs.builder;
 
-import static com.google.common.base.Objects.firstNonNull;
-import static com.google.common.base.Strings.emptyToNull;
-import static com.google.common.base.Strings.nullToEmpty;
-
 import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.TimeUnit;
 
+import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.ISafeRunnable;
 import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.SafeRunner;
 import org.eclipse.core.runtime.Status;
-import org.eclipse.core.runtime.jobs.Job;
-import org.eclipse.jface.action.Action;
+import org.eclipse.core.runtime.jobs.IJobChangeListener;
 import org.eclipse.jface.operation.IRunnableWithProgress;
-import org.eclipse.jface.resource.ImageDescriptor;
-import org.eclipse.swt.widgets.Display;
-import org.eclipse.ui.progress.IProgressConstants;
 
 import de.baumato.jobs.builder.JobBuilder.JobKind;
 
-final class InternalJob extends Job {
+final class InternalJob extends ResultJob<Object> {
 
-  private static final String PLUGIN_ID = "de.baumato.jobs.builder";
+  static final String PLUGIN_ID = "de.baumato.jobs.builder";
 
-  private final Object family;
+  private final JobTemplate template;
   private final IRunnableWithProgress progressRunnable;
-  private final ImageDescriptor image;
-  private final String jobCompletionTitle;
-  private final UserFeedback userFeedback;
   private IStatus jobResult;
+  private JobFuture<?> future;
+  private volatile CancellationToken cancellationToken;
+  private volatile boolean timedOut;
+  private int failedAttempts = 0;
+  private boolean retrying = false;
+  private long periodNanos = 0;
+  private boolean fixedRate;
+  private long nextRunNanos;
+  private long nextRunDelayMillis = -1;
+  private volatile JobMetrics metrics;
 
-  InternalJob(JobBuilder builder) {
-    super(builder.title);
-    this.family = firstNonNull(builder.family, builder.title);
-    this.progressRunnable = builder.progressRunnable;
-    this.image = builder.image;
-    this.userFeedback = builder.userFeedback;
-    this.jobCompletionTitle = createJobCompletionTitle(builder);
-    setUser(builder.kind == JobKind.USER);
-    setSystem(builder.kind == JobKind.SYSTEM);
-    initPriority(builder);
-    initJobChangeListener(builder);
-    initSchedulingRule(builder);
+  InternalJob(JobTemplate template, IRunnableWithProgress progressRunnable) {
+    super(template.title);
+    this.template = template;
+    this.progressRunnable = progressRunnable;
+    setUser(template.kind == JobKind.USER);
+    setSystem(template.kind == JobKind.SYSTEM);
+    initPriority();
+    initJobChangeListener();
+    initSchedulingRule();
   }
 
-  private String createJobCompletionTitle(JobBuilder builder) {
-    String jct = nullToEmpty(builder.jobCompletionTitle).trim();
-    return firstNonNull(emptyToNull(jct), builder.title + ": Done.");
+  private void initPriority() {
+    if (template.priority != null) {
+      setPriority(template.priority);
+    }
   }
 
-  private void initPriority(JobBuilder builder) {
-    if (builder.priority != null) {
-      setPriority(builder.priority);
+  private void initJobChangeListener() {
+    for (IJobChangeListener listener : template.listeners) {
+      addJobChangeListener(listener);
     }
   }
 
-  private void initJobChangeListener(JobBuilder builder) {
-    if (builder.listener != null) {
-      addJobChangeListener(builder.listener);
+  private void initSchedulingRule() {
+    if (template.schedulingRule != null) {
+      setRule(template.schedulingRule);
+    }
+  }
+
+  /**
+   * Schedules this job after the given delay, extended by the rate limit of the job's family.
+   */
+  void scheduleWithRateLimit(long delayMillis) {
+    schedule(RateLimits.reserve(template.family, delayMillis));
+  }
+
+  /**
+   * Wakes up this job sleeping for a permit of its concurrency limit, it runs after the given
+   * delay.
+   */
+  void wakeUpWithDelay(long delayMillis) {
+    JobMetrics jobMetrics = metrics;
+    if (jobMetrics != null) {
+      jobMetrics.wokenUp(delayMillis);
     }
+    wakeUp(delayMillis);
+  }
+
+  /**
+   * Makes this job run periodically, must be called before scheduling.
+   *
+   * @param initialDelayNanos the delay of the first run, the base of the runs at a fixed rate
+   */
+  void setPeriod(long periodNanos, boolean fixedRate, long initialDelayNanos) {
+    this.periodNanos = periodNanos;
+    this.fixedRate = fixedRate;
+    this.nextRunNanos = System.nanoTime() + initialDelayNanos;
   }
 
-  private void initSchedulingRule(JobBuilder builder) {
-    if (builder.schedulingRule != null) {
-      setRule(builder.schedulingRule);
+  /**
+   * Sets the future to complete at the end of the run, must be called before scheduling.
+   */
+  void setFuture(JobFuture<?> future) {
+    this.future = future;
+  }
+
+  /**
+   * Returns the value of a callable job, void jobs do not keep any value.
+   */
+  @Override
+  public Object getValue() {
+    if (progressRunnable instanceof CallableAdapter && getState() != RUNNING && jobResult != null
+        && jobResult.isOK()) {
+      return ((CallableAdapter<?>) progressRunnable).getValue();
     }
+    return null;
+  }
+
+  JobTemplate getTemplate() {
+    return template;
   }
 
   @Override
   public boolean belongsTo(Object family) {
-    return this.family.equals(family);
+    return template.family.equals(family);
   }
 
+  /**
+   * Attaches the metrics recorder if metrics are enabled, before the job manager fires the
+   * scheduled event.
+   */
   @Override
-  protected IStatus run(IProgressMonitor monitor) {
+  public boolean shouldSchedule() {
+    if (metrics == null && JobMetrics.isEnabled()) {
+      initMetrics();
+    }
+    return super.shouldSchedule();
+  }
+
+  private synchronized void initMetrics() {
+    if (metrics == null) {
+      JobMetrics jobMetrics = new JobMetrics(this);
+      addJobChangeListener(jobMetrics);
+      metrics = jobMetrics;
+    }
+  }
+
+  @Override
+  protected IStatus run(final IProgressMonitor monitor) {
+    if (template.onVirtualThread && VirtualThreads.isAvailable()) {
+      return runOnVirtualThread(monitor);
+    }
+    return execute(monitor);
+  }
+
+  /**
+   * Runs the job's body on a virtual thread, so the worker thread of the job manager is free
+   * immediately. The job is done (and its scheduling rule released) when the body has finished.
+   */
+  private IStatus runOnVirtualThread(final IProgressMonitor monitor) {
+    Thread thread = VirtualThreads.newThread(new Runnable() {
+      @Override
+      public void run() {
+        IStatus result = null;
+        try {
+          result = execute(monitor);
+        } catch (RuntimeException e) {
+          result = createErrorStatus(getName(), e);
+          throw e;
+        } catch (Error e) {
+          result = createErrorStatus(getName(), e);
+          throw e;
+        } finally {
+          // the job must be done in any case, otherwise it keeps running and blocks its rule
+          done(result);
+        }
+      }
+    });
+    setThread(thread);
+    thread.start();
+    return ASYNC_FINISH;
+  }
+
+  private IStatus execute(IProgressMonitor monitor) {
+    JobMetrics jobMetrics = metrics;
+    JobExecutionRecord record = jobMetrics != null ? jobMetrics.started() : null;
     jobResult = null;
+    if (!retrying) {
+      failedAttempts = 0;
+    }
+    CancellationToken token = new CancellationToken(monitor, template.interruptOnCancel);
+    cancellationToken = token;
+    CancellationToken previousToken = token.install();
+    AttemptTimeout timeout = startTimeout(token);
     try {
-      applyImageIfAvailable();
-      updateErrorHandlingBehaviour();
-      progressRunnable.run(monitor);
-      jobResult = createStatus();
+      notifyStarted();
+      JobPresentation.INSTANCE.jobStarting(this);
+      progressRunnable.run(wrapMonitor(monitor));
+      jobResult = template.okStatus;
     } catch (InterruptedException e) {
       handleInterruption(e);
+    } catch (OperationCanceledException e) {
+      handleInterruption(e);
     } catch (Exception e) {
       handleError(e);
     } finally {
-      updateErrorHandlingBehaviour();
-      performUserFeedback();
+      stopTimeout(timeout);
+      token.uninstall(previousToken);
+      if (record != null) {
+        JobMetrics.finished(record, jobResult);
+      }
+      retrying = shouldRetry(monitor);
+      if (!retrying) {
+        JobPresentation.INSTANCE.jobFinished(this, jobResult);
+        notifyDone();
+        completeFuture();
+      }
+    }
+    if (retrying) {
+      return scheduleRetry();
     }
+    scheduleNextRun(monitor);
     return jobResult;
   }
 
-  private void applyImageIfAvailable() {
-    if (image != null) {
-      setProperty(IProgressConstants.ICON_PROPERTY, image);
+  /**
+   * Reschedules a periodic job unless it has been canceled or failed. Runs at a fixed rate are due
+   * at multiples of the period, runs missed while the job was running are skipped.
+   */
+  private void scheduleNextRun(IProgressMonitor monitor) {
+    if (periodNanos <= 0 || jobResult == null || jobResult.matches(IStatus.ERROR | IStatus.CANCEL)
+        || (monitor != null && monitor.isCanceled())) {
+      return;
+    }
+    long delayNanos = periodNanos;
+    if (fixedRate) {
+      long now = System.nanoTime();
+      nextRunNanos += periodNanos;
+      if (nextRunNanos - now < 0) {
+        nextRunNanos += ((now - nextRunNanos) / periodNanos + 1) * periodNanos;
+      }
+      delayNanos = nextRunNanos - now;
+    }
+    long delayMillis = TimeUnit.NANOSECONDS.toMillis(delayNanos);
+    if (template.concurrencyLimit != null) {
+      // rescheduled by the limit as soon as this run is done and has released its permit
+      nextRunDelayMillis = delayMillis;
+    } else {
+      scheduleWithRateLimit(delayMillis);
     }
   }
 
-  private void updateErrorHandlingBehaviour() {
-    setProperty(IProgressConstants.NO_IMMEDIATE_ERROR_PROMPT_PROPERTY,
-        Boolean.valueOf(!shouldShowErrorPromptImmediately()));
-  }
-
-  private boolean shouldShowErrorPromptImmediately() {
-    return !userFeedbackAvailable() || userFeedback.performFeedbackImmediately
-        || jobRunsInBackground();
+  /**
+   * Returns and clears the delay of the next periodic run left to the concurrency limit.
+   *
+   * @return the delay in milliseconds, negative if the job is not rescheduled
+   */
+  long takeNextRunDelay() {
+    long delayMillis = nextRunDelayMillis;
+    nextRunDelayMillis = -1;
+    return delayMillis;
   }
 
-  private void performUserFeedback() {
-    if (userFeedbackAvailable()) {
-      if (isModal() || userFeedback.performFeedbackImmediately) {
-        performUserFeedbackImmediately();
-      } else {
-        allowUserToGetFeedbackLater();
+  /**
+   * Checks the result of the current attempt against the retry policy and updates its metrics.
+   */
+  private boolean shouldRetry(IProgressMonitor monitor) {
+    RetryPolicy policy = template.retryPolicy;
+    if (policy == null || jobResult == null) {
+      return false;
+    }
+    if (jobResult.getSeverity() != IStatus.ERROR) {
+      if (failedAttempts > 0 && jobResult.isOK()) {
+        policy.recovered();
       }
+      return false;
+    }
+    failedAttempts++;
+    boolean canceled = monitor != null && monitor.isCanceled() && !timedOut;
+    if (canceled || !policy.canRetry(failedAttempts)) {
+      policy.exhausted();
+      return false;
     }
+    return true;
   }
 
-  private boolean userFeedbackAvailable() {
-    return userFeedback != null;
+  /**
+   * Schedules this job again with the backoff delay, extended by the rate limit of the job's
+   * family. The job manager reschedules it as soon as the current run is done.
+   */
+  private IStatus scheduleRetry() {
+    RetryPolicy policy = template.retryPolicy;
+    long delayMillis = RateLimits.reserve(template.family, policy.nextDelayMillis(failedAttempts));
+    policy.retried();
+    schedule(delayMillis);
+    String msg = String.format("Job '%s' failed in attempt %d of %d, retrying in %d ms.", getName(),
+        failedAttempts, policy.getMaxAttempts(), delayMillis);
+    return new Status(IStatus.INFO, PLUGIN_ID, JobStatusCodes.RETRYING, msg,
+        jobResult.getException());
   }
 
-  private boolean jobRunsInBackground() {
-    return !isModal();
+  private AttemptTimeout startTimeout(CancellationToken token) {
+    timedOut = false;
+    if (template.timeoutNanos <= 0) {
+      return null;
+    }
+    AttemptTimeout attemptTimeout = new AttemptTimeout(token);
+    attemptTimeout.timeout = TimerWheel.INSTANCE.schedule(attemptTimeout, template.timeoutNanos);
+    return attemptTimeout;
   }
 
   /**
-   * Checks if the job is currently in modal mode, means the user decided to NOT run it in
-   * background.
+   * Cancels the pending timeout and replaces the result of a timed out run with a timeout status.
    */
-  private boolean isModal() {
-    Boolean isModal = (Boolean) getProperty(IProgressConstants.PROPERTY_IN_DIALOG);
-    return isModal == null ? false : isModal.booleanValue();
+  private void stopTimeout(AttemptTimeout attemptTimeout) {
+    if (attemptTimeout == null) {
+      return;
+    }
+    timedOut = attemptTimeout.stop();
+    if (timedOut && (jobResult == null || !jobResult.isOK())) {
+      jobResult = createTimeoutStatus(getName(), template.timeoutNanos);
+    }
+  }
+
+  private IProgressMonitor wrapMonitor(IProgressMonitor monitor) {
+    if (template.progressIntervalNanos > 0 && monitor != null) {
+      return new ThrottlingProgressMonitor(monitor, template.progressIntervalNanos,
+          TimeUnit.NANOSECONDS);
+    }
+    return monitor;
+  }
+
+  private void notifyStarted() {
+    for (final JobStartCallback callback : template.startCallbacks) {
+      SafeRunner.run(new SafeRunnable() {
+        @Override
+        public void run() throws Exception {
+          callback.jobStarted(InternalJob.this);
+        }
+      });
+    }
+  }
+
+  private void notifyDone() {
+    for (final JobDoneCallback callback : template.doneCallbacks) {
+      SafeRunner.run(new SafeRunnable() {
+        @Override
+        public void run() throws Exception {
+          callback.jobDone(InternalJob.this, jobResult);
+        }
+      });
+    }
   }
 
-  private IStatus createStatus() {
-    return new Status(IStatus.OK, PLUGIN_ID, IStatus.OK, jobCompletionTitle, null);
+  private void completeFuture() {
+    if (future != null) {
+      future.jobFinished(jobResult);
+    }
   }
 
-  private void handleInterruption(InterruptedException e) {
-    String msg = String.format("Job '%s' has been canceled.", getName());
-    jobResult = new Status(IStatus.CANCEL, PLUGIN_ID, msg, e);
+  @Override
+  protected void canceling() {
+    CancellationToken token = cancellationToken;
+    if (token != null) {
+      token.cancel();
+    }
+  }
+
+  private void handleInterruption(Exception e) {
+    jobResult = createCancelStatus(getName(), e);
   }
 
   private void handleError(Exception e) {
+    jobResult = createErrorStatus(getName(), e);
+  }
+
+  static IStatus createCancelStatus(String jobName, Exception e) {
+    String msg = String.format("Job '%s' has been canceled.", jobName);
+    return new Status(IStatus.CANCEL, PLUGIN_ID, msg, e);
+  }
+
+  /**
+   * Checks if the given job result is the result of an attempt which is retried.
+   */
+  static boolean isRetrying(IStatus jobResult) {
+    return jobResult != null && jobResult.getCode() == JobStatusCodes.RETRYING
+        && PLUGIN_ID.equals(jobResult.getPlugin());
+  }
+
+  static IStatus createTimeoutStatus(String jobName, long timeoutNanos) {
+    String msg = String.format("Job '%s' has timed out after %d ms.", jobName,
+        TimeUnit.NANOSECONDS.toMillis(timeoutNanos));
+    return new Status(IStatus.ERROR, PLUGIN_ID, JobStatusCodes.TIMED_OUT, msg, null);
+  }
+
+  static IStatus createErrorStatus(String jobName, Throwable e) {
     Throwable t = e;
     if (e instanceof InvocationTargetException) {
       t = ((InvocationTargetException) e).getTargetException();
     }
-    String msg = "Job '%s' finished with error(s).";
-    jobResult = new Status(IStatus.ERROR, PLUGIN_ID, msg, t);
+    if (t instanceof CoreException) {
+      return ((CoreException) t).getStatus();
+    }
+    String msg = String.format("Job '%s' finished with error(s).", jobName);
+    return new Status(IStatus.ERROR, PLUGIN_ID, msg, t);
   }
 
-  private void performUserFeedbackImmediately() {
-    Display.getDefault().asyncExec(new Runnable() {
-      @Override
-      public void run() {
-        userFeedback.performUserFeedback(jobResult, true);
-      }
-    });
+  /**
+   * Runs a callback, exceptions are logged by the SafeRunner.
+   */
+  private abstract static class SafeRunnable implements ISafeRunnable {
+    @Override
+    public void handleException(Throwable exception) {
+      // already logged by SafeRunner
+    }
   }
 
-  private void allowUserToGetFeedbackLater() {
-    Action userFeedbackAction = new Action() {
-      @Override
-      public void run() {
-        userFeedback.performUserFeedback(jobResult, false);
+  /**
+   * The timeout of a single run, bound to the token of that run. Once the run has stopped it, the
+   * timeout does not cancel anything anymore, so it cannot hit the next retry or periodic run.
+   */
+  private final class AttemptTimeout implements Runnable {
+
+    private final CancellationToken token;
+    private TimerWheel.Timeout timeout;
+    private boolean stopped = false;
+    private boolean expired = false;
+
+    AttemptTimeout(CancellationToken token) {
+      this.token = token;
+    }
+
+    @Override
+    public synchronized void run() {
+      if (stopped) {
+        return;
       }
-    };
-    setProperty(IProgressConstants.KEEP_PROPERTY, Boolean.TRUE);
-    setProperty(IProgressConstants.ACTION_PROPERTY, userFeedbackAction);
+      expired = true;
+      token.cancel(true);
+      cancel();
+    }
+
+    /**
+     * Stops the timeout at the end of the run.
+     *
+     * @return true if the run has timed out
+     */
+    synchronized boolean stop() {
+      stopped = true;
+      timeout.cancel();
+      return expired;
+    }
   }
 }
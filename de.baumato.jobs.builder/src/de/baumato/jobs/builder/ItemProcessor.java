@@ -0,0 +1,29 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Tobias Baumann.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Tobias Baumann - initial API and implementation
+ ******************************************************************************/
+package de.baumato.jobs.builder;
+
+/**
+ * Processes a single item of a job working on a collection of items.
+ *
+ * @see JobBuilder#forEach(java.util.Collection, ItemProcessor)
+ * @param <T> the type of the items
+ */
+public interface ItemProcessor<T> {
+
+  /**
+   * Processes the given item. If an exception occurs the job returns an error {@code IStatus}.
+   *
+   * @param item the item to process
+   * @throws Exception if the item could not be processed
+   */
+  public void process(T item) throws Exception;
+
+}
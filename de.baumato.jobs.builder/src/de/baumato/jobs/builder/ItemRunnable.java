@@ -0,0 +1,156 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Tobias Baumann.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Tobias Baumann - initial API and implementation
+ ******************************************************************************/
+package de.baumato.jobs.builder;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.jface.operation.IRunnableWithProgress;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+
+/**
+ * <p>
+ * Processes a collection of items with determinate progress. The items are processed in chunks,
+ * after each chunk the progress is reported and the monitor is checked for cancellation. So the
+ * progress view shows how much work is left, and a canceled job stops after the current chunk.
+ * <p>
+ * If the items are processed in parallel, the chunks are processed as subtasks of a
+ * {@link ParallelRunnable}.
+ * <p>
+ * The items are not copied (unless they are processed in parallel and are no <code>List</code>),
+ * so the collection must not be modified while the job runs. It may contain <code>null</code>.
+ *
+ * @param <T> the type of the items
+ */
+public class ItemRunnable<T> implements IRunnableWithProgress {
+
+  /** the number of chunks used by default, i.e. the progress is reported in steps of 1 percent */
+  private static final int DEFAULT_CHUNKS = 100;
+
+  private final String title;
+  private final Collection<? extends T> items;
+  private final ItemProcessor<? super T> processor;
+  private final int chunkSize;
+  private final boolean parallel;
+
+  /**
+   * Constructs a new instance processing the items sequentially and reporting progress in steps
+   * of 1 percent.
+   *
+   * @param title the title to display in the progress monitor
+   * @param items the items to process
+   * @param processor the processor of a single item
+   */
+  public ItemRunnable(String title, Collection<? extends T> items,
+      ItemProcessor<? super T> processor) {
+    this(title, items, processor, Math.max(1, items.size() / DEFAULT_CHUNKS), false);
+  }
+
+  /**
+   * Constructs a new instance.
+   *
+   * @param title the title to display in the progress monitor
+   * @param items the items to process
+   * @param processor the processor of a single item
+   * @param chunkSize the number of items processed between two progress updates
+   * @param parallel <code>true</code> to process the chunks in parallel
+   */
+  public ItemRunnable(String title, Collection<? extends T> items,
+      ItemProcessor<? super T> processor, int chunkSize, boolean parallel) {
+    checkArgument(chunkSize > 0, "Given chunk size is not positive.");
+    this.title = checkNotNull(title);
+    this.items = checkNotNull(items);
+    this.processor = checkNotNull(processor);
+    this.chunkSize = chunkSize;
+    this.parallel = parallel;
+  }
+
+  @Override
+  public void run(IProgressMonitor monitor) throws InvocationTargetException,
+      InterruptedException {
+    IProgressMonitor progress = monitor == null ? new NullProgressMonitor() : monitor;
+    if (parallel && items.size() > chunkSize) {
+      new ParallelRunnable(title, createChunks()).run(progress);
+      return;
+    }
+    progress.beginTask(title, items.size());
+    try {
+      Iterator<? extends T> iterator = items.iterator();
+      while (iterator.hasNext()) {
+        checkCanceled(progress);
+        progress.worked(processChunk(iterator, chunkSize));
+      }
+    } finally {
+      progress.done();
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private List<IRunnableWithProgress> createChunks() {
+    List<? extends T> list =
+        items instanceof List ? (List<? extends T>) items : Lists.newArrayList(items);
+    List<IRunnableWithProgress> chunks = Lists.newArrayList();
+    for (final List<? extends T> chunk : Lists.partition(list, chunkSize)) {
+      chunks.add(new IRunnableWithProgress() {
+        @Override
+        public void run(IProgressMonitor monitor) throws InvocationTargetException,
+            InterruptedException {
+          monitor.beginTask(title, chunk.size());
+          checkCanceled(monitor);
+          processChunk(chunk.iterator(), chunk.size());
+          monitor.done();
+        }
+      });
+    }
+    return chunks;
+  }
+
+  private void checkCanceled(IProgressMonitor monitor) throws InterruptedException {
+    if (monitor.isCanceled()) {
+      throw new InterruptedException();
+    }
+  }
+
+  /**
+   * Processes the next items of the given iterator, at most the given number.
+   *
+   * @return the number of items processed
+   */
+  private int processChunk(Iterator<? extends T> iterator, int maxItems)
+      throws InvocationTargetException, InterruptedException {
+    int processed = 0;
+    while (processed < maxItems && iterator.hasNext()) {
+      T item = iterator.next();
+      try {
+        processor.process(item);
+      } catch (Exception e) {
+        Throwables.propagateIfPossible(e);
+        Throwables.propagateIfInstanceOf(e, InterruptedException.class);
+        throw new InvocationTargetException(e);
+      }
+      processed++;
+    }
+    return processed;
+  }
+
+  public String getTitle() {
+    return title;
+  }
+}
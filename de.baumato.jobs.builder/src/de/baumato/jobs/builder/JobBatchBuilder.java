@@ -0,0 +1,134 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Tobias Baumann.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Tobias Baumann - initial API and implementation
+ ******************************************************************************/
+package de.baumato.jobs.builder;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.jface.operation.IRunnableWithProgress;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Builder to create and schedule many jobs at once. All jobs share the configuration of one
+ * {@link JobBuilder} template (title, family, kind, priority, feedback, ...), only the runnables
+ * differ. The template is compiled into a {@link JobTemplate} once per batch and not once per job.
+ * <p>
+ * If the template has no family, the jobs of a batch share the template's title as family (just
+ * like jobs built one by one), so the whole batch can be joined or canceled using the job manager.
+ */
+public class JobBatchBuilder {
+
+  private JobBuilder template;
+  /** runnables and runnables with progress, runnables get adapted with the title when built */
+  private final List<Object> runnables = Lists.newArrayList();
+
+  /** package private constructor */
+  JobBatchBuilder(JobBuilder template) {
+    template(template);
+  }
+
+  /**
+   * Sets the builder whose configuration is used for all jobs of this batch. A runnable set on the
+   * template is ignored.
+   *
+   * @param template the template, not null
+   * @return this
+   */
+  public JobBatchBuilder template(JobBuilder template) {
+    this.template = checkNotNull(template, "Given template is null.");
+    return this;
+  }
+
+  /**
+   * Adds a runnable to be processed in a job of this batch.
+   *
+   * @see JobBuilder#runnable(Runnable)
+   * @param runnable the runnable
+   * @return this
+   */
+  public JobBatchBuilder add(Runnable runnable) {
+    runnables.add(checkNotNull(runnable, "Given runnable is null."));
+    return this;
+  }
+
+  /**
+   * Adds a runnable with progress to be processed in a job of this batch.
+   *
+   * @see JobBuilder#runnable(IRunnableWithProgress)
+   * @param runnable the runnable
+   * @return this
+   */
+  public JobBatchBuilder add(IRunnableWithProgress runnable) {
+    runnables.add(checkNotNull(runnable, "Given runnable is null."));
+    return this;
+  }
+
+  /**
+   * Adds all given runnables, each one is processed in its own job.
+   *
+   * @param runnables the runnables to add
+   * @return this
+   */
+  public JobBatchBuilder addAll(Iterable<? extends Runnable> runnables) {
+    checkNotNull(runnables, "Given runnables are null.");
+    for (Runnable runnable : runnables) {
+      add(runnable);
+    }
+    return this;
+  }
+
+  /**
+   * Builds one job per added runnable.
+   *
+   * @return the built jobs in the order the runnables have been added
+   */
+  public List<Job> build() {
+    checkState(!runnables.isEmpty(), "No runnables have been added to the batch.");
+    JobTemplate jobTemplate = template.toTemplate();
+    List<Job> jobs = Lists.newArrayListWithCapacity(runnables.size());
+    for (Object runnable : runnables) {
+      jobs.add(jobTemplate.build(toProgressRunnable(runnable, jobTemplate)));
+    }
+    return Collections.unmodifiableList(jobs);
+  }
+
+  /**
+   * Builds one job per added runnable and schedules all of them. The scheduling behaviour of the
+   * template (e.g. rate limits) applies to each job.
+   *
+   * @return the scheduled jobs in the order the runnables have been added
+   */
+  public List<Job> buildAndSchedule() {
+    checkState(!runnables.isEmpty(), "No runnables have been added to the batch.");
+    JobTemplate jobTemplate = template.toTemplate();
+    List<Job> jobs = Lists.newArrayListWithCapacity(runnables.size());
+    for (Object runnable : runnables) {
+      jobs.add(jobTemplate.schedule(toProgressRunnable(runnable, jobTemplate), 0));
+    }
+    return Collections.unmodifiableList(jobs);
+  }
+
+  /**
+   * Adapts a runnable using the title of the template the batch is built with, which may have
+   * been set after the runnable has been added.
+   */
+  private static IRunnableWithProgress toProgressRunnable(Object runnable, JobTemplate template) {
+    if (runnable instanceof IRunnableWithProgress) {
+      return (IRunnableWithProgress) runnable;
+    }
+    return new RunnableAdapter(template.title, (Runnable) runnable);
+  }
+}
@@ -17,14 +17,21 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
 import java.util.concurrent.TimeUnit;
 
+import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.jobs.IJobChangeListener;
 import org.eclipse.core.runtime.jobs.ISchedulingRule;
 import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.jface.operation.IRunnableWithProgress;
 import org.eclipse.jface.resource.ImageDescriptor;
 
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ListenableFuture;
+
 /**
  * Builder to create and schedule jobs. For details on jobs, see
  * http://www.eclipse.org/articles/Article-Concurrency/jobs-api.html
@@ -45,8 +52,22 @@ public class JobBuilder {
   ImageDescriptor image = null;
   String jobCompletionTitle = null;
   UserFeedback userFeedback = null;
-  IJobChangeListener listener = null;
+  final List<IJobChangeListener> listeners = Lists.newArrayList();
+  final List<JobStartCallback> startCallbacks = Lists.newArrayList();
+  final List<JobDoneCallback> doneCallbacks = Lists.newArrayList();
   ISchedulingRule schedulingRule = null;
+  Object coalesceKey = null;
+  long coalesceWindowMillis = 0;
+  String maxConcurrencyName = null;
+  int maxConcurrency = 0;
+  boolean onVirtualThread = false;
+  JobExecutor executor = null;
+  long progressIntervalNanos = 0;
+  boolean interruptOnCancel = false;
+  long timeoutNanos = 0;
+  RetryPolicy retryPolicy;
+  /** the template of the current configuration, reset by each change of the configuration */
+  private JobTemplate template;
 
   /** package private constructor */
   JobBuilder() {}
@@ -61,7 +82,7 @@ public class JobBuilder {
     checkNotNull(title, "Given title is null");
     checkArgument(title.trim().length() > 0, "Given title is empty");
     this.title = title;
-    return this;
+    return changed();
   }
 
   /**
@@ -74,7 +95,7 @@ public class JobBuilder {
    */
   public JobBuilder image(ImageDescriptor image) {
     this.image = image;
-    return this;
+    return changed();
   }
 
   /**
@@ -89,7 +110,7 @@ public class JobBuilder {
    */
   public JobBuilder isSystemJob() {
     kind = JobKind.SYSTEM;
-    return this;
+    return changed();
   }
 
   /**
@@ -104,7 +125,7 @@ public class JobBuilder {
    */
   public JobBuilder isUserJob() {
     kind = JobKind.USER;
-    return this;
+    return changed();
   }
 
   /**
@@ -118,7 +139,7 @@ public class JobBuilder {
    */
   public JobBuilder isDefaultJob() {
     kind = JobKind.DEFAULT;
-    return this;
+    return changed();
   }
 
   /**
@@ -146,6 +167,161 @@ public class JobBuilder {
     return this;
   }
 
+  /**
+   * Takes subtasks to be processed in parallel in the job, e.g. to let a CPU-bound job use all
+   * cores. The job shows a single progress entry, each subtask gets an equal share of it. The
+   * statuses of failed subtasks are aggregated in the job's result.
+   *
+   * @see ParallelRunnable
+   * @param subtasks the subtasks, not empty
+   * @return this
+   */
+  public JobBuilder parallel(Iterable<? extends IRunnableWithProgress> subtasks) {
+    this.progressRunnable =
+        new ParallelRunnable(title, checkNotNull(subtasks, "Given subtasks are null."));
+    return this;
+  }
+
+  /**
+   * Takes runnables to be processed in parallel in the job.
+   *
+   * @see #parallel(Iterable)
+   * @param subtasks the subtasks, not empty
+   * @return this
+   */
+  public JobBuilder parallel(Runnable... subtasks) {
+    checkNotNull(subtasks, "Given subtasks are null.");
+    List<IRunnableWithProgress> adapted = Lists.newArrayListWithCapacity(subtasks.length);
+    for (Runnable subtask : subtasks) {
+      adapted.add(new RunnableAdapter(title, checkNotNull(subtask, "Given subtask is null.")));
+    }
+    return parallel(adapted);
+  }
+
+  /**
+   * Takes items to be processed one by one in the job. In contrast to a plain runnable the job
+   * shows determinate progress: it is updated in steps of 1 percent of the items, and after each
+   * step the job stops if it has been canceled.
+   *
+   * @see ItemRunnable
+   * @param items the items to process
+   * @param processor the processor of a single item
+   * @return this
+   */
+  public <T> JobBuilder forEach(Collection<? extends T> items, ItemProcessor<? super T> processor) {
+    checkNotNull(items, "Given items are null.");
+    checkNotNull(processor, "Given processor is null.");
+    this.progressRunnable = new ItemRunnable<T>(title, items, processor);
+    return this;
+  }
+
+  /**
+   * Takes items to be processed in the job, the items are processed in chunks of the given size.
+   * After each chunk the progress is updated and the job stops if it has been canceled.
+   *
+   * @see ItemRunnable
+   * @param items the items to process
+   * @param processor the processor of a single item
+   * @param chunkSize the number of items processed between two progress updates
+   * @param parallel <code>true</code> to process the chunks in parallel
+   * @return this
+   */
+  public <T> JobBuilder forEach(Collection<? extends T> items, ItemProcessor<? super T> processor,
+      int chunkSize, boolean parallel) {
+    checkNotNull(items, "Given items are null.");
+    checkNotNull(processor, "Given processor is null.");
+    this.progressRunnable = new ItemRunnable<T>(title, items, processor, chunkSize, parallel);
+    return this;
+  }
+
+  /**
+   * <p>
+   * Interrupts the thread running the job's runnable when the job gets canceled, so blocking
+   * operations (e.g. <code>Thread.sleep()</code>, <code>Object.wait()</code> or interruptible I/O)
+   * stop promptly. The interrupt is cleared when the runnable has finished.
+   * <p>
+   * Runnables that do not block can poll {@link CancellationToken#current()} instead.
+   *
+   * @return this
+   */
+  public JobBuilder interruptOnCancel() {
+    this.interruptOnCancel = true;
+    return changed();
+  }
+
+  /**
+   * <p>
+   * Limits the run time of the job. When the job's runnable runs longer than the given timeout, the
+   * job is canceled: its progress monitor gets canceled and its thread is interrupted, even if
+   * {@link #interruptOnCancel()} has not been set. The job then finishes with an error status
+   * having the code {@link JobStatusCodes#TIMED_OUT}, as soon as the runnable returns.
+   * <p>
+   * The timeout is enforced with a precision of about 50 milliseconds.
+   *
+   * @param timeout the maximum run time, must be positive
+   * @param timeUnit the time unit of the timeout
+   * @return this
+   */
+  public JobBuilder timeout(long timeout, TimeUnit timeUnit) {
+    checkArgument(timeout > 0, "Given timeout is not positive.");
+    this.timeoutNanos = timeUnit.toNanos(timeout);
+    return changed();
+  }
+
+  /**
+   * <p>
+   * Retries the job if it finishes with an error, according to the given policy. The same job is
+   * scheduled again after the delay of the policy, until it succeeds or has failed the maximum
+   * number of attempts. Canceled jobs are not retried.
+   * <p>
+   * Job change listeners are notified of each attempt. An attempt which is retried finishes with
+   * an info status having the code {@link JobStatusCodes#RETRYING} and the exception of the
+   * failure. Done callbacks, user feedback and futures only see the result of the last attempt.
+   * <p>
+   * Coalesced jobs and jobs of a custom executor cannot be retried.
+   *
+   * @param policy the retry policy
+   * @return this
+   */
+  public JobBuilder retry(RetryPolicy policy) {
+    this.retryPolicy = checkNotNull(policy, "Given retry policy is null.");
+    return changed();
+  }
+
+  /**
+   * <p>
+   * Runs the job's runnable on a virtual thread instead of a worker thread of the job manager. The
+   * worker thread is released as soon as the virtual thread has been started. This is meant for
+   * jobs that mainly block (e.g. on I/O), so many of them can run concurrently without occupying
+   * as many platform threads. Family, scheduling rule and progress monitor behave as usual, the
+   * job is done when the runnable has finished.
+   * <p>
+   * Virtual threads require Java 21 or later. On older Java versions this setting has no effect.
+   *
+   * @return this
+   */
+  public JobBuilder onVirtualThread() {
+    this.onVirtualThread = true;
+    return changed();
+  }
+
+  /**
+   * Throttles the progress reported by the job's runnable. Work and sub task names are forwarded to
+   * the progress view at most once per given interval, work reported in between is accumulated.
+   * The cancellation state is checked at most once per interval, too. Useful for runnables calling
+   * <code>monitor.worked(1)</code> for a huge number of items.
+   *
+   * @see ThrottlingProgressMonitor
+   * @param interval the minimum time between two progress updates, must be positive
+   * @param timeUnit the time unit of the interval
+   * @return this
+   */
+  public JobBuilder throttleProgress(long interval, TimeUnit timeUnit) {
+    checkArgument(interval > 0, "Given interval is not positive.");
+    this.progressIntervalNanos = timeUnit.toNanos(interval);
+    return changed();
+  }
+
   /**
    * This does the same as {@link #userFeedback(String, UserFeedbackRunnable)} but with a
    * default job completion title.
@@ -180,7 +356,7 @@ public class JobBuilder {
     this.userFeedback =
         new UserFeedback(checkNotNull(userFeedback, "The given user feedback runnable is null."),
             false);
-    return this;
+    return changed();
   }
 
   /**
@@ -209,7 +385,7 @@ public class JobBuilder {
     this.userFeedback =
         new UserFeedback(checkNotNull(userFeedback, "The given user feedback runnable is null."),
             true);
-    return this;
+    return changed();
   }
 
   /**
@@ -221,7 +397,7 @@ public class JobBuilder {
    */
   public JobBuilder highPriority() {
     priority = Job.SHORT;
-    return this;
+    return changed();
   }
 
   /**
@@ -233,7 +409,7 @@ public class JobBuilder {
    */
   public JobBuilder lowPriority() {
     priority = Job.LONG;
-    return this;
+    return changed();
   }
 
   /**
@@ -246,19 +422,51 @@ public class JobBuilder {
    */
   public JobBuilder lowestPriority() {
     priority = Job.BUILD;
-    return this;
+    return changed();
   }
 
   /**
    * Adds the given listener to the job to be created. Consider to use {@code JobChangeAdapter} for
-   * a more compact notation.
+   * a more compact notation. Any number of listeners may be added.
    *
    * @param listener the listener to add
    * @return this
    */
   public JobBuilder addJobChangeListener(IJobChangeListener listener) {
-    this.listener = listener;
-    return this;
+    listeners.add(checkNotNull(listener, "Given listener is null."));
+    return changed();
+  }
+
+  /**
+   * <p>
+   * Adds a callback that is invoked by the job itself when it starts running. In contrast to an
+   * {@code IJobChangeListener} the callback is not notified by the job manager but directly by the
+   * job, in the job's thread.
+   * <p>
+   * The callback is not invoked if the job gets canceled before it runs.
+   *
+   * @param callback the callback to add
+   * @return this
+   */
+  public JobBuilder onStart(JobStartCallback callback) {
+    startCallbacks.add(checkNotNull(callback, "Given callback is null."));
+    return changed();
+  }
+
+  /**
+   * <p>
+   * Adds a callback that is invoked by the job itself when it has finished running, after the
+   * user feedback has been triggered. In contrast to an {@code IJobChangeListener} the callback is
+   * not notified by the job manager but directly by the job, in the job's thread.
+   * <p>
+   * The callback is not invoked if the job gets canceled before it runs.
+   *
+   * @param callback the callback to add
+   * @return this
+   */
+  public JobBuilder onDone(JobDoneCallback callback) {
+    doneCallbacks.add(checkNotNull(callback, "Given callback is null."));
+    return changed();
   }
 
   /**
@@ -273,7 +481,7 @@ public class JobBuilder {
    */
   public JobBuilder family(Object family) {
     this.family = family;
-    return this;
+    return changed();
   }
 
   /**
@@ -293,7 +501,7 @@ public class JobBuilder {
    */
   public JobBuilder schedulingRule(ISchedulingRule rule) {
     this.schedulingRule = rule;
-    return this;
+    return changed();
   }
 
   /**
@@ -326,6 +534,128 @@ public class JobBuilder {
     return schedulingRule(new NotConcurrentlyRule(schedulingRuleName));
   }
 
+  /**
+   * <p>
+   * Collapses all jobs scheduled with the same key within the given time window into a single
+   * execution of the latest given runnable. The first job scheduled for a key is run after the
+   * window (plus a given scheduling delay) has elapsed; jobs scheduled for the same key in the
+   * meantime just replace the runnable to run. If a job of the key is currently running, the job is
+   * run once more after it finishes.
+   * <p>
+   * This is useful for bursty triggers like editor events, where only the latest event matters.
+   * Coalesced jobs can only be created using {@link #buildAndSchedule()} or
+   * {@link #buildAndScheduleWithDelay(long, TimeUnit)}, which return the job shared by all requests
+   * of the key.
+   * <p>
+   * The shared job is created with the settings (title, family, scheduling rule, ...) of the
+   * request that creates it, i.e. the first request of the key after the previous job of the key
+   * has been released. Settings of later requests for the same key only contribute their runnable.
+   * Coalesced jobs are not throttled by rate limits, as the window limits them already. They
+   * cannot be combined with {@link #maxConcurrency(String, int)} or {@link #retry(RetryPolicy)}.
+   *
+   * @param key the key identifying the requests to coalesce, compared using equals
+   * @param window the time window in given time unit
+   * @param timeUnit the time unit of the window
+   * @return this
+   */
+  public JobBuilder coalesceBy(Object key, long window, TimeUnit timeUnit) {
+    checkArgument(window >= 0, "Given window is negative.");
+    this.coalesceKey = checkNotNull(key, "Given key is null.");
+    this.coalesceWindowMillis = timeUnit.toMillis(window);
+    return changed();
+  }
+
+  /**
+   * <p>
+   * Sets an executor running the job instead of the Eclipse job manager, e.g. a
+   * {@link ConcurrentJobExecutor} in headless processes. Since such a job is no Eclipse job, it
+   * can be scheduled using {@link #buildAndScheduleAsync()} only.
+   * <p>
+   * Rate limits of the job's family apply. Coalescing, retries, job change listeners,
+   * {@link #onStart(JobStartCallback)}, {@link #onDone(JobDoneCallback)},
+   * {@link #maxConcurrency(String, int)} and {@link #onVirtualThread()} are not supported by
+   * custom executors, scheduling such a job fails with an <code>IllegalStateException</code>. The
+   * {@link ConcurrentJobExecutor} honors timeouts, {@link #interruptOnCancel()},
+   * {@link #throttleProgress(long, TimeUnit)} and the {@link CancellationToken}.
+   *
+   * @param executor the executor, or null to use the Eclipse job manager
+   * @return this
+   */
+  public JobBuilder executor(JobExecutor executor) {
+    this.executor = executor;
+    return changed();
+  }
+
+  /**
+   * Creates an immutable template with the behaviour set by this builder. The template can be used
+   * to create many jobs that only differ in their runnables. A runnable set on this builder is not
+   * part of the template. Later changes to this builder do not affect the template. The template
+   * is reused until the configuration of this builder changes, so building many jobs with the same
+   * builder does not copy the configuration each time.
+   *
+   * @return the template
+   */
+  public JobTemplate toTemplate() {
+    if (template == null) {
+      template = new JobTemplate(this);
+    }
+    return template;
+  }
+
+  /**
+   * Drops the template of the previous configuration.
+   *
+   * @return this
+   */
+  private JobBuilder changed() {
+    template = null;
+    return this;
+  }
+
+  /**
+   * <p>
+   * This sets a {@link HierarchicalRule} for the given path, e.g.
+   * <code>"project/moduleA/file"</code>. Jobs scheduled for overlapping paths (one path is a prefix
+   * of the other) do not run concurrently, jobs for disjoint paths do.
+   * <p>
+   * Use only one of: {@link #schedulingRule(ISchedulingRule)},
+   * {@link #runsNotConcurrently(String)}, {@link #runsNotConcurrentlyOn(String)}.
+   *
+   * @param path the path of the resource the job works on, segments separated by '/'
+   * @return this
+   */
+  public JobBuilder runsNotConcurrentlyOn(String path) {
+    return schedulingRule(new HierarchicalRule(path));
+  }
+
+  /**
+   * <p>
+   * Ensures that at most the given number of jobs scheduled with the given name run concurrently,
+   * e.g. to limit the number of parallel exports to a database. In contrast to
+   * {@link #runsNotConcurrently(String)} this does not use a scheduling rule: jobs exceeding the
+   * limit sleep in the job manager until a job of the same name is done. Sleeping jobs are found by
+   * the family queries of the job manager (e.g. <code>join</code> or <code>cancel</code>), a
+   * canceled job leaves the queue of the limit. Waking up a sleeping job by hand bypasses the
+   * limit, i.e. <code>Job.wakeUp()</code> as well as <code>IJobManager.wakeUp(family)</code> for
+   * the family of the jobs, which also wakes up the jobs waiting for a permit. So do not wake up
+   * the family of jobs having a limit.
+   * <p>
+   * The limit applies to jobs scheduled by {@link #buildAndSchedule()},
+   * {@link #buildAndScheduleWithDelay(long, TimeUnit)} or a {@link JobTemplate}. If jobs use the
+   * same name with different numbers, the number given last is used.
+   *
+   * @param name the name of the limit
+   * @param maxConcurrentJobs the maximum number of jobs running concurrently, must be positive
+   * @return this
+   */
+  public JobBuilder maxConcurrency(String name, int maxConcurrentJobs) {
+    checkNotNull(name, "Given name is null.");
+    checkArgument(maxConcurrentJobs > 0, "Given number of concurrent jobs is not positive.");
+    this.maxConcurrencyName = name;
+    this.maxConcurrency = maxConcurrentJobs;
+    return changed();
+  }
+
   /**
    * Builds the job with behaviour set by this builder.
    *
@@ -333,7 +663,20 @@ public class JobBuilder {
    */
   public Job build() {
     checkState(progressRunnable != null, "The job's runnable is not set.");
-    return new InternalJob(this);
+    return toTemplate().build(progressRunnable);
+  }
+
+  /**
+   * Builds a job computing a value with the given callable and the behaviour set by this builder.
+   * The computed value is kept by the job and can be requested using
+   * {@link ResultJob#getValue()} when the job is done. If an exception occurs the exception is
+   * wrapped and the job returns an error {@code IStatus}.
+   *
+   * @param callable the callable computing the value
+   * @return the built job
+   */
+  public <T> ResultJob<T> callable(Callable<T> callable) {
+    return toTemplate().build(checkNotNull(callable, "Given callable is null."));
   }
 
   /**
@@ -343,9 +686,19 @@ public class JobBuilder {
    * @return the job
    */
   public Job buildAndSchedule() {
-    Job job = build();
-    job.schedule();
-    return job;
+    return buildAndScheduleWithDelay(0, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Builds the job and schedules it. Instead of the job a future is returned that is completed with
+   * the job's result as soon as the job has finished, so no thread needs to wait for the job using
+   * {@code Job.join()}. Canceling the future cancels the job.
+   *
+   * @return the future of the job's result
+   */
+  public ListenableFuture<IStatus> buildAndScheduleAsync() {
+    checkState(progressRunnable != null, "The job's runnable is not set.");
+    return toTemplate().scheduleAsync(progressRunnable, 0);
   }
 
   /**
@@ -362,8 +715,48 @@ public class JobBuilder {
    * @return the job
    */
   public Job buildAndScheduleWithDelay(long delay, TimeUnit timeUnit) {
-    Job job = build();
-    job.schedule(timeUnit.toMillis(delay));
-    return job;
+    checkState(progressRunnable != null, "The job's runnable is not set.");
+    return toTemplate().schedule(progressRunnable, timeUnit.toMillis(delay));
+  }
+
+  /**
+   * <p>
+   * Builds the job and schedules it to be run periodically: first after the given initial delay,
+   * then each time the given period has elapsed since the previous run was due. The same job
+   * instance is rescheduled at the end of each run. If a run takes longer than the period, the runs
+   * missed in the meantime are skipped, so runs never overlap and the job stays on schedule.
+   * <p>
+   * The job is not rescheduled anymore when it gets canceled or a run fails. A failing run may be
+   * retried using {@link #retry(RetryPolicy)} before.
+   *
+   * @param initialDelay the delay before the first run, must not be negative
+   * @param period the time between the start of two runs, must be positive
+   * @param timeUnit the time unit of the delay and the period
+   * @return the job
+   */
+  public Job buildAndScheduleAtFixedRate(long initialDelay, long period, TimeUnit timeUnit) {
+    checkState(progressRunnable != null, "The job's runnable is not set.");
+    return toTemplate().schedulePeriodically(progressRunnable, initialDelay, period, timeUnit,
+        true);
+  }
+
+  /**
+   * <p>
+   * Builds the job and schedules it to be run periodically: first after the given initial delay,
+   * then each time after the given delay since the previous run has finished. The same job instance
+   * is rescheduled at the end of each run.
+   * <p>
+   * The job is not rescheduled anymore when it gets canceled or a run fails. A failing run may be
+   * retried using {@link #retry(RetryPolicy)} before.
+   *
+   * @param initialDelay the delay before the first run, must not be negative
+   * @param delay the time between the end of a run and the start of the next one, must be positive
+   * @param timeUnit the time unit of the delays
+   * @return the job
+   */
+  public Job buildAndScheduleWithFixedDelay(long initialDelay, long delay, TimeUnit timeUnit) {
+    checkState(progressRunnable != null, "The job's runnable is not set.");
+    return toTemplate().schedulePeriodically(progressRunnable, initialDelay, delay, timeUnit,
+        false);
   }
 }
@@ -0,0 +1,31 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Tobias Baumann.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Tobias Baumann - initial API and implementation
+ ******************************************************************************/
+package de.baumato.jobs.builder;
+
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.jobs.Job;
+
+/**
+ * Callback invoked by a job when it has finished running.
+ *
+ * @see JobBuilder#onDone(JobDoneCallback)
+ */
+public interface JobDoneCallback {
+
+  /**
+   * Called in the job's thread right after the job's runnable has finished.
+   *
+   * @param job the job that has finished
+   * @param jobResult the result of the job
+   */
+  public void jobDone(Job job, IStatus jobResult);
+
+}
@@ -0,0 +1,196 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Tobias Baumann.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Tobias Baumann - initial API and implementation
+ ******************************************************************************/
+package de.baumato.jobs.builder;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.jobs.ISchedulingRule;
+import org.eclipse.core.runtime.jobs.Job;
+
+import com.google.common.base.Objects;
+
+import de.baumato.jobs.builder.JobBuilder.JobKind;
+
+/**
+ * <p>
+ * The record of one execution of a job: when it has been scheduled, started and finished, in which
+ * thread it has run and with which result. Times are values of <code>System.nanoTime()</code>, so
+ * only differences between them are meaningful.
+ * <p>
+ * A record is filled in while the job proceeds and passed to the {@link JobMetricsListener}s at
+ * each step. Listeners should not keep it after the job has finished, as it references the job and
+ * its thread.
+ */
+public final class JobExecutionRecord {
+
+  private final Job job;
+  private final JobTemplate template;
+  private final long scheduledNanos;
+  private volatile long delayNanos;
+  private final boolean schedulingRecorded;
+  private final boolean heldByConcurrencyLimit;
+  private volatile long startedNanos = 0;
+  private volatile long finishedNanos = 0;
+  private volatile Thread thread;
+  private volatile int severity = IStatus.OK;
+
+  JobExecutionRecord(InternalJob job, long scheduledNanos, long delayMillis,
+      boolean schedulingRecorded, boolean heldByConcurrencyLimit) {
+    this.job = job;
+    this.template = job.getTemplate();
+    this.scheduledNanos = scheduledNanos;
+    this.delayNanos = TimeUnit.MILLISECONDS.toNanos(delayMillis);
+    this.schedulingRecorded = schedulingRecorded;
+    this.heldByConcurrencyLimit = heldByConcurrencyLimit;
+  }
+
+  /**
+   * Sets the delay a job waiting for a permit of its concurrency limit has been woken up with.
+   */
+  void wokenUp(long delayMillis) {
+    this.delayNanos = TimeUnit.MILLISECONDS.toNanos(delayMillis);
+  }
+
+  void started(long nanos, Thread runner) {
+    this.thread = runner;
+    this.startedNanos = nanos;
+  }
+
+  void finished(long nanos, IStatus jobResult) {
+    this.severity = jobResult != null ? jobResult.getSeverity() : IStatus.ERROR;
+    this.finishedNanos = nanos;
+  }
+
+  public Job getJob() {
+    return job;
+  }
+
+  public String getTitle() {
+    return template.getTitle();
+  }
+
+  public Object getFamily() {
+    return template.getFamily();
+  }
+
+  /**
+   * @return <code>true</code> if the family has been set explicitly, <code>false</code> if the
+   *         job's title is its family
+   */
+  public boolean isFamilySet() {
+    return template.familySet;
+  }
+
+  public JobKind getKind() {
+    return template.getKind();
+  }
+
+  public int getPriority() {
+    return template.getPriority();
+  }
+
+  public ISchedulingRule getSchedulingRule() {
+    return template.getSchedulingRule();
+  }
+
+  public long getScheduledNanos() {
+    return scheduledNanos;
+  }
+
+  /**
+   * @return the delay the job has been scheduled with, or the delay it has been woken up with
+   *         after waiting for a permit of its concurrency limit (e.g. the wait for its rate limit)
+   */
+  public long getDelayNanos() {
+    return delayNanos;
+  }
+
+  /**
+   * @return the time the job has started running, 0 if it has not started (yet)
+   */
+  public long getStartedNanos() {
+    return startedNanos;
+  }
+
+  /**
+   * @return the time the job has finished, 0 if it has not finished (yet)
+   */
+  public long getFinishedNanos() {
+    return finishedNanos;
+  }
+
+  /**
+   * Checks if listeners have been notified of the scheduling of the job. Jobs scheduled before
+   * metrics have been enabled are recorded from their start on only, their scheduled time is
+   * their start time.
+   *
+   * @return <code>true</code> if the scheduling has been recorded
+   */
+  public boolean isSchedulingRecorded() {
+    return schedulingRecorded;
+  }
+
+  /**
+   * Checks if the job has been scheduled to wait for a permit of its concurrency limit. The time
+   * waited for the permit is part of the queue time.
+   *
+   * @return <code>true</code> if the job has waited for a permit
+   * @see JobBuilder#maxConcurrency(String, int)
+   */
+  public boolean isHeldByConcurrencyLimit() {
+    return heldByConcurrencyLimit;
+  }
+
+  public boolean hasStarted() {
+    return startedNanos != 0;
+  }
+
+  /**
+   * Returns the time the job has waited to be run after its scheduling delay had elapsed, e.g. for
+   * a worker thread, for its scheduling rule or for a permit of its concurrency limit. The delay a
+   * job is woken up with after getting its permit is not part of the queue time.
+   *
+   * @return the queue time, 0 if the job has not started
+   */
+  public long getQueueNanos() {
+    return hasStarted() ? Math.max(0, startedNanos - scheduledNanos - delayNanos) : 0;
+  }
+
+  /**
+   * @return the time the job has been running, 0 if it has not finished or has not started at all
+   */
+  public long getRunNanos() {
+    return hasStarted() && finishedNanos != 0 ? finishedNanos - startedNanos : 0;
+  }
+
+  /**
+   * @return the thread the job has run in, null if it has not started
+   */
+  public Thread getThread() {
+    return thread;
+  }
+
+  /**
+   * @return the severity of the job's result, e.g. <code>IStatus.CANCEL</code> if the job has been
+   *         canceled before it has started
+   */
+  public int getSeverity() {
+    return severity;
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(this).add("title", getTitle()).add("family", getFamily())
+        .add("queueNanos", getQueueNanos()).add("runNanos", getRunNanos())
+        .add("severity", severity).toString();
+  }
+}
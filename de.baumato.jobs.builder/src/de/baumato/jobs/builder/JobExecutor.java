@@ -0,0 +1,48 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Tobias Baumann.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Tobias Baumann - initial API and implementation
+ ******************************************************************************/
+package de.baumato.jobs.builder;
+
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.jface.operation.IRunnableWithProgress;
+
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * <p>
+ * Executes jobs instead of the Eclipse job manager, e.g. {@link ConcurrentJobExecutor} to run jobs
+ * in headless processes where no job manager is wanted.
+ * <p>
+ * An executor is set using {@link JobBuilder#executor(JobExecutor)}. Since such jobs are not
+ * Eclipse jobs, they can be scheduled using <code>buildAndScheduleAsync()</code> only.
+ * Implementations are expected to honor the priority, family and scheduling rule of the given
+ * template.
+ */
+public interface JobExecutor {
+
+  /**
+   * Runs the given runnable with the configuration of the given template after the given delay.
+   *
+   * @param template the configuration of the job
+   * @param runnable the runnable to run
+   * @param delayMillis a time delay in milliseconds before the job should run
+   * @return the future of the job's result. Canceling the future cancels the job.
+   */
+  public ListenableFuture<IStatus> execute(JobTemplate template, IRunnableWithProgress runnable,
+      long delayMillis);
+
+  /**
+   * Cancels all jobs of the given family that have not finished yet.
+   *
+   * @param family the family of the jobs to cancel
+   */
+  public void cancel(Object family);
+
+}
@@ -0,0 +1,71 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Tobias Baumann.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Tobias Baumann - initial API and implementation
+ ******************************************************************************/
+package de.baumato.jobs.builder;
+
+/**
+ * Management interface of the live statistics of the jobs of one family, registered by
+ * {@link JobMXBeanRegistry}.
+ */
+public interface JobFamilyMXBean {
+
+  /**
+   * @return the family, as string
+   */
+  public String getFamily();
+
+  /**
+   * @return the number of jobs which are scheduled but have not started yet, including sleeping
+   *         jobs
+   */
+  public long getQueuedJobCount();
+
+  /**
+   * @return the number of jobs currently running
+   */
+  public long getRunningJobCount();
+
+  /**
+   * @return the number of finished jobs, including failed and canceled ones
+   */
+  public long getFinishedJobCount();
+
+  public long getFailedJobCount();
+
+  public long getCanceledJobCount();
+
+  /**
+   * @return the number of jobs finished per second, averaged over the last minute
+   */
+  public double getThroughputPerSecond();
+
+  /**
+   * @return the 99th percentile of the times jobs have waited to be run after their scheduling
+   *         delay, in milliseconds
+   */
+  public double getQueueLatencyP99Millis();
+
+  /**
+   * @return the 99th percentile of the times jobs have been running, in milliseconds
+   */
+  public double getRunLatencyP99Millis();
+
+  /**
+   * @return the mean of the times jobs have been running, in milliseconds
+   */
+  public double getRunLatencyMeanMillis();
+
+  /**
+   * Resets the counters of finished jobs and the latencies. The numbers of queued and running jobs
+   * are kept.
+   */
+  public void resetStatistics();
+
+}
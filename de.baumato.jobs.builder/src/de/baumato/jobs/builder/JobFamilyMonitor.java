@@ -0,0 +1,179 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Tobias Baumann.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Tobias Baumann - initial API and implementation
+ ******************************************************************************/
+package de.baumato.jobs.builder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.eclipse.core.runtime.IStatus;
+
+/**
+ * The live statistics of the jobs of one family, updated by {@link JobMXBeanRegistry} with
+ * lock-free counters only. Jobs scheduled or started before the time the monitor counts from are
+ * not counted as queued or running, so their later start or finish does not decrement the
+ * counters.
+ */
+final class JobFamilyMonitor implements JobFamilyMXBean {
+
+  private static final int THROUGHPUT_WINDOW_SECONDS = 60;
+  private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+  private final String family;
+  private final long countFromNanos;
+  private final AtomicLong queued = new AtomicLong();
+  private final AtomicLong running = new AtomicLong();
+  private final AtomicLong finished = new AtomicLong();
+  private final AtomicLong failed = new AtomicLong();
+  private final AtomicLong canceled = new AtomicLong();
+  private final LatencyHistogram queueLatency = new LatencyHistogram();
+  private final LatencyHistogram runLatency = new LatencyHistogram();
+  /** jobs finished per second in a ring of the last seconds */
+  private final AtomicLongArray finishedPerSecond = new AtomicLongArray(THROUGHPUT_WINDOW_SECONDS);
+  private final AtomicLongArray secondOfSlot = new AtomicLongArray(THROUGHPUT_WINDOW_SECONDS);
+
+  /**
+   * @param countFromNanos the time from which on scheduled and started jobs are counted, the time
+   *        of the event creating the monitor
+   */
+  JobFamilyMonitor(Object family, long countFromNanos) {
+    this.family = String.valueOf(family);
+    this.countFromNanos = countFromNanos;
+  }
+
+  void jobScheduled(JobExecutionRecord record) {
+    if (isScheduledCounted(record)) {
+      queued.incrementAndGet();
+    }
+  }
+
+  void jobStarted(JobExecutionRecord record) {
+    if (isScheduledCounted(record)) {
+      queued.decrementAndGet();
+    }
+    if (isStartCounted(record)) {
+      running.incrementAndGet();
+    }
+  }
+
+  void jobFinished(JobExecutionRecord record) {
+    if (record.hasStarted()) {
+      if (isStartCounted(record)) {
+        running.decrementAndGet();
+      }
+      queueLatency.record(record.getQueueNanos());
+      runLatency.record(record.getRunNanos());
+    } else if (isScheduledCounted(record)) {
+      queued.decrementAndGet();
+    }
+    finished.incrementAndGet();
+    if (record.getSeverity() == IStatus.ERROR) {
+      failed.incrementAndGet();
+    } else if (record.getSeverity() == IStatus.CANCEL) {
+      canceled.incrementAndGet();
+    }
+    countThroughput(record.getFinishedNanos());
+  }
+
+  private boolean isScheduledCounted(JobExecutionRecord record) {
+    return record.isSchedulingRecorded() && record.getScheduledNanos() - countFromNanos >= 0;
+  }
+
+  private boolean isStartCounted(JobExecutionRecord record) {
+    return record.getStartedNanos() - countFromNanos >= 0;
+  }
+
+  private void countThroughput(long nanos) {
+    long second = TimeUnit.NANOSECONDS.toSeconds(nanos);
+    int slot = slotOf(second);
+    long slotSecond = secondOfSlot.get(slot);
+    if (slotSecond != second && secondOfSlot.compareAndSet(slot, slotSecond, second)) {
+      // a job finishing concurrently may get lost here, which is fine for a rate
+      finishedPerSecond.set(slot, 0);
+    }
+    finishedPerSecond.incrementAndGet(slot);
+  }
+
+  private static int slotOf(long second) {
+    int slot = (int) (second % THROUGHPUT_WINDOW_SECONDS);
+    return slot < 0 ? slot + THROUGHPUT_WINDOW_SECONDS : slot;
+  }
+
+  @Override
+  public String getFamily() {
+    return family;
+  }
+
+  @Override
+  public long getQueuedJobCount() {
+    return Math.max(0, queued.get());
+  }
+
+  @Override
+  public long getRunningJobCount() {
+    return Math.max(0, running.get());
+  }
+
+  @Override
+  public long getFinishedJobCount() {
+    return finished.get();
+  }
+
+  @Override
+  public long getFailedJobCount() {
+    return failed.get();
+  }
+
+  @Override
+  public long getCanceledJobCount() {
+    return canceled.get();
+  }
+
+  @Override
+  public double getThroughputPerSecond() {
+    long now = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime());
+    long count = 0;
+    for (int slot = 0; slot < THROUGHPUT_WINDOW_SECONDS; slot++) {
+      long age = now - secondOfSlot.get(slot);
+      if (age >= 0 && age < THROUGHPUT_WINDOW_SECONDS) {
+        count += finishedPerSecond.get(slot);
+      }
+    }
+    return (double) count / THROUGHPUT_WINDOW_SECONDS;
+  }
+
+  @Override
+  public double getQueueLatencyP99Millis() {
+    return queueLatency.getValueAtPercentile(99) / NANOS_PER_MILLI;
+  }
+
+  @Override
+  public double getRunLatencyP99Millis() {
+    return runLatency.getValueAtPercentile(99) / NANOS_PER_MILLI;
+  }
+
+  @Override
+  public double getRunLatencyMeanMillis() {
+    return runLatency.getMean() / NANOS_PER_MILLI;
+  }
+
+  @Override
+  public void resetStatistics() {
+    finished.set(0);
+    failed.set(0);
+    canceled.set(0);
+    queueLatency.reset();
+    runLatency.reset();
+    for (int slot = 0; slot < THROUGHPUT_WINDOW_SECONDS; slot++) {
+      finishedPerSecond.set(slot, 0);
+    }
+  }
+}
@@ -0,0 +1,87 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Tobias Baumann.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Tobias Baumann - initial API and implementation
+ ******************************************************************************/
+package de.baumato.jobs.builder;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.jobs.IJobChangeEvent;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.core.runtime.jobs.JobChangeAdapter;
+
+import com.google.common.util.concurrent.AbstractFuture;
+
+/**
+ * Future completed with the outcome of a job. It is completed by the job itself at the end of its
+ * run. If the job gets canceled before it runs, it is completed when the job is done. Canceling the
+ * future cancels the job. Attempts of the job which are retried do not complete the future.
+ */
+abstract class JobFuture<V> extends AbstractFuture<V> {
+
+  private final Job job;
+
+  JobFuture(Job job) {
+    this.job = job;
+    job.addJobChangeListener(new JobChangeAdapter() {
+      @Override
+      public void done(IJobChangeEvent event) {
+        if (!InternalJob.isRetrying(event.getResult())) {
+          jobFinished(event.getResult());
+        }
+      }
+    });
+  }
+
+  /**
+   * Completes this future with the given job result, if not already completed.
+   */
+  abstract void jobFinished(IStatus jobResult);
+
+  @Override
+  public boolean cancel(boolean mayInterruptIfRunning) {
+    if (super.cancel(mayInterruptIfRunning)) {
+      job.cancel();
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Returns a future completed with the job result, whatever its severity.
+   */
+  static JobFuture<IStatus> forStatus(Job job) {
+    return new JobFuture<IStatus>(job) {
+      @Override
+      void jobFinished(IStatus jobResult) {
+        set(jobResult);
+      }
+    };
+  }
+
+  /**
+   * Returns a future completed with the value computed by the given callable. The future fails if
+   * the job fails and gets canceled if the job gets canceled.
+   */
+  static <V> JobFuture<V> forValue(Job job, final CallableAdapter<V> callable) {
+    return new JobFuture<V>(job) {
+      @Override
+      void jobFinished(IStatus jobResult) {
+        if (jobResult == null || jobResult.getSeverity() == IStatus.CANCEL) {
+          super.cancel(false);
+        } else if (jobResult.getSeverity() == IStatus.ERROR) {
+          Throwable t = jobResult.getException();
+          setException(t != null ? t : new CoreException(jobResult));
+        } else {
+          set(callable.getValue());
+        }
+      }
+    };
+  }
+}
@@ -0,0 +1,301 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Tobias Baumann.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Tobias Baumann - initial API and implementation
+ ******************************************************************************/
+package de.baumato.jobs.builder;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.MultiStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.jface.operation.IRunnableWithProgress;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.AbstractFuture;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+
+/**
+ * <p>
+ * Runs jobs that depend on each other. Each node of the graph is a job configured by a
+ * {@link JobBuilder}. A node's job is scheduled as soon as the jobs of all nodes it depends on have
+ * finished successfully, so independent branches of the graph run in parallel.
+ * <p>
+ * If a job fails or gets canceled, the nodes depending on it (directly or indirectly) are not run
+ * anymore. Independent branches are not affected.
+ *
+ * <pre>
+ * JobGraph graph = Jobs.graph();
+ * JobGraph.Node download = graph.add(Jobs.builder(&quot;Download&quot;, downloadRunnable));
+ * JobGraph.Node parse =
+ *     graph.add(Jobs.builder(&quot;Parse&quot;, parseRunnable)).dependsOn(download);
+ * graph.add(Jobs.builder(&quot;Index&quot;, indexRunnable)).dependsOn(parse);
+ * ListenableFuture&lt;IStatus&gt; result = graph.schedule();
+ * </pre>
+ */
+public class JobGraph {
+
+  private final List<Node> nodes = Lists.newArrayList();
+  private final GraphFuture future = new GraphFuture();
+  private AtomicInteger unfinishedNodes;
+  private boolean scheduled = false;
+
+  /** package private constructor */
+  JobGraph() {}
+
+  /**
+   * Adds a node running a job with the behaviour set by the given builder. The builder's runnable
+   * has to be set and its job has to support asynchronous scheduling, i.e. it must not be
+   * coalesced.
+   *
+   * @param builder the builder of the node's job
+   * @return the new node
+   */
+  public synchronized Node add(JobBuilder builder) {
+    checkState(!scheduled, "The graph has already been scheduled.");
+    checkNotNull(builder, "Given builder is null.");
+    checkState(builder.progressRunnable != null, "The job's runnable is not set.");
+    JobTemplate template = builder.toTemplate();
+    template.checkAsyncSupport();
+    Node node = new Node(template, builder.progressRunnable);
+    nodes.add(node);
+    return node;
+  }
+
+  /**
+   * Schedules the jobs of all nodes without dependencies. The jobs of the other nodes get scheduled
+   * as soon as the nodes they depend on are done. The returned future is completed with the
+   * results of all nodes once no job of the graph is running or will be run anymore. Canceling the
+   * future cancels the graph.
+   *
+   * @return the future of the graph's result
+   */
+  public ListenableFuture<IStatus> schedule() {
+    List<Node> roots = Lists.newArrayList();
+    synchronized (this) {
+      checkState(!scheduled, "The graph has already been scheduled.");
+      checkState(!nodes.isEmpty(), "The graph has no nodes.");
+      checkNoCycles();
+      scheduled = true;
+      unfinishedNodes = new AtomicInteger(nodes.size());
+      for (Node node : nodes) {
+        node.pendingDependencies.set(node.dependencies.size());
+        if (node.dependencies.isEmpty()) {
+          roots.add(node);
+        }
+      }
+    }
+    for (Node root : roots) {
+      root.schedule();
+    }
+    return future;
+  }
+
+  /**
+   * Cancels all running jobs of the graph. Jobs of nodes not yet scheduled are not run anymore.
+   */
+  public void cancel() {
+    future.cancel(false);
+  }
+
+  private void checkNoCycles() {
+    Set<Node> visited = Sets.newHashSet();
+    Set<Node> onPath = Sets.newHashSet();
+    for (Node node : nodes) {
+      checkNoCycles(node, visited, onPath);
+    }
+  }
+
+  private void checkNoCycles(Node node, Set<Node> visited, Set<Node> onPath) {
+    if (visited.contains(node)) {
+      return;
+    }
+    checkState(onPath.add(node), "The graph contains a cycle at %s.", node);
+    for (Node dependency : node.dependencies) {
+      checkNoCycles(dependency, visited, onPath);
+    }
+    onPath.remove(node);
+    visited.add(node);
+  }
+
+  private void nodeFinished() {
+    if (unfinishedNodes.decrementAndGet() == 0) {
+      future.complete();
+    }
+  }
+
+  /**
+   * A node of the graph, i.e. a job and the nodes it depends on.
+   */
+  public final class Node {
+
+    private final JobTemplate template;
+    private final IRunnableWithProgress runnable;
+    private final List<Node> dependencies = Lists.newArrayList();
+    private final List<Node> dependents = Lists.newArrayList();
+    private final AtomicInteger pendingDependencies = new AtomicInteger();
+    private volatile ListenableFuture<IStatus> jobResult;
+    private volatile IStatus result;
+
+    private Node(JobTemplate template, IRunnableWithProgress runnable) {
+      this.template = template;
+      this.runnable = runnable;
+    }
+
+    /**
+     * Defines that the job of this node is not scheduled before the jobs of the given nodes have
+     * finished successfully.
+     *
+     * @param nodes the nodes of the same graph this node depends on
+     * @return this
+     */
+    public Node dependsOn(Node... nodes) {
+      synchronized (JobGraph.this) {
+        checkState(!scheduled, "The graph has already been scheduled.");
+        for (Node node : checkNotNull(nodes, "Given nodes are null.")) {
+          checkArgument(node.getGraph() == JobGraph.this, "Given node belongs to another graph.");
+          checkArgument(node != this, "A node cannot depend on itself.");
+          dependencies.add(node);
+          node.dependents.add(this);
+        }
+      }
+      return this;
+    }
+
+    private JobGraph getGraph() {
+      return JobGraph.this;
+    }
+
+    private void schedule() {
+      if (future.isCancelled()) {
+        skip();
+        return;
+      }
+      try {
+        jobResult = template.scheduleAsync(runnable, 0);
+      } catch (Throwable e) {
+        // the node has to finish anyway, otherwise the graph's future is never completed
+        jobResult = Futures.immediateFailedFuture(e);
+      }
+      jobResult.addListener(new Runnable() {
+        @Override
+        public void run() {
+          jobFinished();
+        }
+      }, MoreExecutors.sameThreadExecutor());
+    }
+
+    private void jobFinished() {
+      IStatus status = getJobResult();
+      finish(status);
+      if (status.getSeverity() == IStatus.ERROR || status.getSeverity() == IStatus.CANCEL) {
+        for (Node dependent : dependents) {
+          dependent.skipIfNotFinished();
+        }
+      } else {
+        for (Node dependent : dependents) {
+          if (dependent.pendingDependencies.decrementAndGet() == 0) {
+            dependent.schedule();
+          }
+        }
+      }
+    }
+
+    private IStatus getJobResult() {
+      try {
+        IStatus status = jobResult.get();
+        return status != null ? status : Status.CANCEL_STATUS;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return Status.CANCEL_STATUS;
+      } catch (ExecutionException e) {
+        return new Status(IStatus.ERROR, InternalJob.PLUGIN_ID, e.getMessage(), e.getCause());
+      } catch (CancellationException e) {
+        return Status.CANCEL_STATUS;
+      }
+    }
+
+    private void skipIfNotFinished() {
+      // a node is skipped once only, even if several of its dependencies fail
+      if (pendingDependencies.getAndSet(-1) > 0) {
+        skip();
+      }
+    }
+
+    private void skip() {
+      String msg = String.format("Job '%s' has not been run, a job it depends on did not succeed.",
+          template.title);
+      finish(new Status(IStatus.CANCEL, InternalJob.PLUGIN_ID, msg));
+      for (Node dependent : dependents) {
+        dependent.skipIfNotFinished();
+      }
+    }
+
+    private void finish(IStatus status) {
+      result = status;
+      nodeFinished();
+    }
+
+    private void cancel() {
+      ListenableFuture<IStatus> current = jobResult;
+      if (current != null) {
+        current.cancel(false);
+      }
+    }
+
+    /**
+     * Returns the result of this node's job.
+     *
+     * @return the result or null if the job did not finish yet
+     */
+    public IStatus getResult() {
+      return result;
+    }
+
+    @Override
+    public String toString() {
+      return Objects.toStringHelper(this).add("title", template.title).toString();
+    }
+  }
+
+  private final class GraphFuture extends AbstractFuture<IStatus> {
+
+    void complete() {
+      MultiStatus status =
+          new MultiStatus(InternalJob.PLUGIN_ID, IStatus.OK, "Jobs of the graph are done.", null);
+      for (Node node : nodes) {
+        status.add(node.result);
+      }
+      set(status);
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+      if (super.cancel(mayInterruptIfRunning)) {
+        for (Node node : nodes) {
+          node.cancel();
+        }
+        return true;
+      }
+      return false;
+    }
+  }
+}
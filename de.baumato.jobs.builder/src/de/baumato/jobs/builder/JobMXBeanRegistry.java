@@ -0,0 +1,183 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Tobias Baumann.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Tobias Baumann - initial API and implementation
+ ******************************************************************************/
+package de.baumato.jobs.builder;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * <p>
+ * Registers a {@link JobFamilyMXBean} for each job family at the platform MBean server, showing
+ * the number of queued and running jobs, the throughput and latencies of the family in JMX
+ * consoles like JConsole or VisualVM. The beans are fed by a {@link JobMetricsListener}, so they
+ * only see jobs built by the job builder.
+ * <p>
+ * Only families set explicitly with {@link JobBuilder#family(Object)} get a bean. Jobs without a
+ * family, whose title is their family, are not monitored, since titles like "Indexing &lt;file&gt;"
+ * would register a bean per title that is never removed.
+ * <p>
+ * The beans are named <code>de.baumato.jobs.builder:type=JobFamily,name="&lt;family&gt;"</code>.
+ * A bean is registered as soon as the first job of its family is scheduled after
+ * {@link #register()}.
+ */
+public final class JobMXBeanRegistry {
+
+  static final String DOMAIN = "de.baumato.jobs.builder";
+
+  private static final Object LOCK = new Object();
+  private static MonitoringListener listener;
+
+  private JobMXBeanRegistry() {
+    // static methods only
+  }
+
+  /**
+   * Starts registering the beans of the job families. Has no effect if already registering.
+   */
+  public static void register() {
+    synchronized (LOCK) {
+      if (listener == null) {
+        listener = new MonitoringListener(ManagementFactory.getPlatformMBeanServer());
+        JobMetrics.addListener(listener);
+      }
+    }
+  }
+
+  /**
+   * Stops updating the beans and unregisters all of them.
+   */
+  public static void unregister() {
+    synchronized (LOCK) {
+      if (listener != null) {
+        JobMetrics.removeListener(listener);
+        listener.close();
+        listener = null;
+      }
+    }
+  }
+
+  public static boolean isRegistered() {
+    synchronized (LOCK) {
+      return listener != null;
+    }
+  }
+
+  private static final class MonitoringListener implements JobMetricsListener {
+
+    private final MBeanServer server;
+    private final ConcurrentMap<Object, JobFamilyMonitor> monitors =
+        new ConcurrentHashMap<Object, JobFamilyMonitor>();
+    private final ConcurrentMap<Object, ObjectName> names =
+        new ConcurrentHashMap<Object, ObjectName>();
+    private volatile boolean closed = false;
+
+    MonitoringListener(MBeanServer server) {
+      this.server = server;
+    }
+
+    @Override
+    public void jobScheduled(JobExecutionRecord record) {
+      JobFamilyMonitor monitor = monitorOf(record, record.getScheduledNanos());
+      if (monitor != null) {
+        monitor.jobScheduled(record);
+      }
+    }
+
+    @Override
+    public void jobStarted(JobExecutionRecord record) {
+      JobFamilyMonitor monitor = monitorOf(record, record.getStartedNanos());
+      if (monitor != null) {
+        monitor.jobStarted(record);
+      }
+    }
+
+    @Override
+    public void jobFinished(JobExecutionRecord record) {
+      JobFamilyMonitor monitor = monitorOf(record, record.getFinishedNanos());
+      if (monitor != null) {
+        monitor.jobFinished(record);
+      }
+    }
+
+    /**
+     * Returns the monitor of the recorded job's family, a new monitor counts jobs from the given
+     * time of the event creating it on.
+     *
+     * @return the monitor, null if the job's family has not been set explicitly
+     */
+    private JobFamilyMonitor monitorOf(JobExecutionRecord record, long eventNanos) {
+      if (!record.isFamilySet()) {
+        return null;
+      }
+      Object family = record.getFamily();
+      JobFamilyMonitor monitor = monitors.get(family);
+      if (monitor == null) {
+        monitor = new JobFamilyMonitor(family, eventNanos);
+        JobFamilyMonitor existing = monitors.putIfAbsent(family, monitor);
+        if (existing != null) {
+          return existing;
+        }
+        registerMBean(family, monitor);
+      }
+      return monitor;
+    }
+
+    private void registerMBean(Object family, JobFamilyMonitor monitor) {
+      if (closed) {
+        return;
+      }
+      try {
+        String name = DOMAIN + ":type=JobFamily,name=" + ObjectName.quote(monitor.getFamily());
+        ObjectName objectName = new ObjectName(name);
+        try {
+          server.registerMBean(monitor, objectName);
+        } catch (InstanceAlreadyExistsException e) {
+          // another family with the same string representation
+          objectName = new ObjectName(name + ",id=" + System.identityHashCode(family));
+          server.registerMBean(monitor, objectName);
+        }
+        names.put(family, objectName);
+        if (closed) {
+          // close() has run meanwhile and may have missed the new bean
+          unregisterMBean(objectName);
+          names.remove(family);
+        }
+      } catch (JMException e) {
+        // do not keep an unregistered monitor, the next job of the family tries again
+        monitors.remove(family, monitor);
+        throw new IllegalStateException("Could not register MBean of job family: " + family, e);
+      }
+    }
+
+    void close() {
+      closed = true;
+      for (ObjectName objectName : names.values()) {
+        unregisterMBean(objectName);
+      }
+      names.clear();
+      monitors.clear();
+    }
+
+    private void unregisterMBean(ObjectName objectName) {
+      try {
+        server.unregisterMBean(objectName);
+      } catch (JMException e) {
+        // already unregistered by someone else
+      }
+    }
+  }
+}
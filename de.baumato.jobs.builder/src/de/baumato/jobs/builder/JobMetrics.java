@@ -0,0 +1,169 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Tobias Baumann.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Tobias Baumann - initial API and implementation
+ ******************************************************************************/
+package de.baumato.jobs.builder;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Arrays;
+
+import org.eclipse.core.runtime.ISafeRunnable;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.SafeRunner;
+import org.eclipse.core.runtime.jobs.IJobChangeEvent;
+import org.eclipse.core.runtime.jobs.JobChangeAdapter;
+
+/**
+ * <p>
+ * Registry of the {@link JobMetricsListener}s and the recorder of the metrics of one job. The
+ * listeners are kept in a copy on write array, so jobs check with a single volatile read whether
+ * metrics are enabled at all.
+ * <p>
+ * A job gets a recorder when it is scheduled while metrics are enabled. The recorder listens to
+ * the job's scheduled events to know the scheduling delay and to its done events to complete the
+ * records of jobs canceled before they have started.
+ */
+final class JobMetrics extends JobChangeAdapter {
+
+  private static final JobMetricsListener[] NO_LISTENERS = new JobMetricsListener[0];
+
+  private static volatile JobMetricsListener[] listeners = NO_LISTENERS;
+
+  private final InternalJob job;
+  /** the record of the job's execution which has been scheduled but not yet started */
+  private volatile JobExecutionRecord pendingRecord;
+
+  JobMetrics(InternalJob job) {
+    this.job = job;
+  }
+
+  static boolean isEnabled() {
+    return listeners.length > 0;
+  }
+
+  static synchronized void addListener(JobMetricsListener listener) {
+    checkNotNull(listener, "Given listener is null.");
+    JobMetricsListener[] newListeners = Arrays.copyOf(listeners, listeners.length + 1);
+    newListeners[listeners.length] = listener;
+    listeners = newListeners;
+  }
+
+  static synchronized void removeListener(JobMetricsListener listener) {
+    JobMetricsListener[] current = listeners;
+    for (int i = 0; i < current.length; i++) {
+      if (current[i].equals(listener)) {
+        JobMetricsListener[] newListeners = new JobMetricsListener[current.length - 1];
+        System.arraycopy(current, 0, newListeners, 0, i);
+        System.arraycopy(current, i + 1, newListeners, i, current.length - i - 1);
+        listeners = newListeners;
+        return;
+      }
+    }
+  }
+
+  @Override
+  public void scheduled(IJobChangeEvent event) {
+    if (isEnabled()) {
+      // the time a job sleeps for a permit of its concurrency limit counts as queue time
+      boolean heldByLimit = event.getDelay() >= ConcurrencyLimit.PENDING_DELAY_MILLIS;
+      long delayMillis = heldByLimit ? 0 : event.getDelay();
+      JobExecutionRecord record =
+          new JobExecutionRecord(job, System.nanoTime(), delayMillis, true, heldByLimit);
+      pendingRecord = record;
+      fire(Event.SCHEDULED, record);
+    }
+  }
+
+  @Override
+  public void done(IJobChangeEvent event) {
+    JobExecutionRecord record = pendingRecord;
+    if (record != null && !record.hasStarted()) {
+      // canceled before it has started
+      pendingRecord = null;
+      finished(record, event.getResult());
+    }
+  }
+
+  /**
+   * Records the delay the job is woken up with after it has got the permit of its concurrency
+   * limit, so the delay is not counted as queue time.
+   */
+  void wokenUp(long delayMillis) {
+    JobExecutionRecord record = pendingRecord;
+    if (record != null && !record.hasStarted()) {
+      record.wokenUp(delayMillis);
+    }
+  }
+
+  /**
+   * Records the start of the job in the current thread.
+   *
+   * @return the record of the execution, null if metrics are disabled
+   */
+  JobExecutionRecord started() {
+    JobExecutionRecord record = pendingRecord;
+    pendingRecord = null;
+    if (!isEnabled()) {
+      return null;
+    }
+    long now = System.nanoTime();
+    if (record == null) {
+      // scheduled before metrics have been enabled
+      record = new JobExecutionRecord(job, now, 0, false, false);
+    }
+    record.started(now, Thread.currentThread());
+    fire(Event.STARTED, record);
+    return record;
+  }
+
+  static void finished(JobExecutionRecord record, IStatus jobResult) {
+    record.finished(System.nanoTime(), jobResult);
+    fire(Event.FINISHED, record);
+  }
+
+  private static void fire(final Event event, final JobExecutionRecord record) {
+    for (final JobMetricsListener listener : listeners) {
+      SafeRunner.run(new ISafeRunnable() {
+        @Override
+        public void run() throws Exception {
+          event.notify(listener, record);
+        }
+
+        @Override
+        public void handleException(Throwable exception) {
+          // already logged by SafeRunner
+        }
+      });
+    }
+  }
+
+  private enum Event {
+    SCHEDULED {
+      @Override
+      void notify(JobMetricsListener listener, JobExecutionRecord record) {
+        listener.jobScheduled(record);
+      }
+    },
+    STARTED {
+      @Override
+      void notify(JobMetricsListener listener, JobExecutionRecord record) {
+        listener.jobStarted(record);
+      }
+    },
+    FINISHED {
+      @Override
+      void notify(JobMetricsListener listener, JobExecutionRecord record) {
+        listener.jobFinished(record);
+      }
+    };
+
+    abstract void notify(JobMetricsListener listener, JobExecutionRecord record);
+  }
+}
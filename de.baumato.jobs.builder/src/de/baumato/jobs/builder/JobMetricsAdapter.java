@@ -0,0 +1,33 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Tobias Baumann.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Tobias Baumann - initial API and implementation
+ ******************************************************************************/
+package de.baumato.jobs.builder;
+
+/**
+ * Implementation of {@link JobMetricsListener} with empty methods, to be extended by listeners
+ * interested in some of the events only.
+ */
+public abstract class JobMetricsAdapter implements JobMetricsListener {
+
+  @Override
+  public void jobScheduled(JobExecutionRecord record) {
+    // nothing to do
+  }
+
+  @Override
+  public void jobStarted(JobExecutionRecord record) {
+    // nothing to do
+  }
+
+  @Override
+  public void jobFinished(JobExecutionRecord record) {
+    // nothing to do
+  }
+}
@@ -0,0 +1,49 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Tobias Baumann.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Tobias Baumann - initial API and implementation
+ ******************************************************************************/
+package de.baumato.jobs.builder;
+
+/**
+ * <p>
+ * Listener notified of the life cycle of all jobs built by the job builder, to collect execution
+ * metrics like queue and run times. Listeners are registered using
+ * {@link Jobs#addMetricsListener(JobMetricsListener)}. As long as no listener is registered, jobs
+ * do not record any metrics.
+ * <p>
+ * Listeners are called synchronously in the thread scheduling or running the job and must return
+ * quickly. Exceptions thrown by a listener are logged.
+ *
+ * @see JobMetricsAdapter
+ * @see JobStatistics
+ */
+public interface JobMetricsListener {
+
+  /**
+   * Called when a job has been scheduled.
+   *
+   * @param record the record of the job's execution, only the scheduling time is set
+   */
+  public void jobScheduled(JobExecutionRecord record);
+
+  /**
+   * Called in the job's thread right before the job's runnable is run.
+   *
+   * @param record the record of the job's execution, the start time and thread are set
+   */
+  public void jobStarted(JobExecutionRecord record);
+
+  /**
+   * Called when a job has finished running, or when it has been canceled before it has started.
+   *
+   * @param record the complete record of the job's execution
+   */
+  public void jobFinished(JobExecutionRecord record);
+
+}
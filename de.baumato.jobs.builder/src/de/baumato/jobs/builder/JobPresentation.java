@@ -0,0 +1,66 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Tobias Baumann.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Tobias Baumann - initial API and implementation
+ ******************************************************************************/
+package de.baumato.jobs.builder;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.core.runtime.IStatus;
+
+/**
+ * <p>
+ * Presents jobs to the user, i.e. applies the job's image and error prompt behaviour to the
+ * progress view and gives the user feedback when a job is done.
+ * <p>
+ * The implementation for the workbench is contributed by the fragment
+ * <code>de.baumato.jobs.builder.ui</code>, so this bundle does not use SWT and the workbench itself.
+ * Without the fragment (e.g. in processes without a workbench) jobs are not presented and no user
+ * feedback is given.
+ */
+abstract class JobPresentation {
+
+  private static final String WORKBENCH_PRESENTATION =
+      "de.baumato.jobs.builder.WorkbenchJobPresentation";
+
+  static final JobPresentation INSTANCE = create();
+
+  /** the time the UI thread may spend on immediate user feedback per frame */
+  static volatile long userFeedbackTimeBudgetNanos = TimeUnit.MILLISECONDS.toNanos(10);
+
+  private static JobPresentation create() {
+    try {
+      return (JobPresentation) Class.forName(WORKBENCH_PRESENTATION).newInstance();
+    } catch (Exception e) {
+      return new HeadlessPresentation();
+    } catch (LinkageError e) {
+      // the fragment is installed, but the workbench is not available
+      return new HeadlessPresentation();
+    }
+  }
+
+  /**
+   * Called in the job's thread before the job's runnable is run.
+   */
+  abstract void jobStarting(InternalJob job);
+
+  /**
+   * Called in the job's thread after the job's runnable has been run.
+   */
+  abstract void jobFinished(InternalJob job, IStatus jobResult);
+
+  private static final class HeadlessPresentation extends JobPresentation {
+
+    @Override
+    void jobStarting(InternalJob job) {}
+
+    @Override
+    void jobFinished(InternalJob job, IStatus jobResult) {}
+  }
+}
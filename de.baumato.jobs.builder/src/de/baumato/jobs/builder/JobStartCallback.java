@@ -0,0 +1,29 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Tobias Baumann.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Tobias Baumann - initial API and implementation
+ ******************************************************************************/
+package de.baumato.jobs.builder;
+
+import org.eclipse.core.runtime.jobs.Job;
+
+/**
+ * Callback invoked by a job when it starts running.
+ *
+ * @see JobBuilder#onStart(JobStartCallback)
+ */
+public interface JobStartCallback {
+
+  /**
+   * Called in the job's thread right before the job's runnable is run.
+   *
+   * @param job the job that starts running
+   */
+  public void jobStarted(Job job);
+
+}
@@ -0,0 +1,156 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Tobias Baumann.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Tobias Baumann - initial API and implementation
+ ******************************************************************************/
+package de.baumato.jobs.builder;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.core.runtime.IStatus;
+
+import com.google.common.base.Objects;
+
+/**
+ * <p>
+ * Metrics listener aggregating the execution records of jobs per family into latency histograms
+ * and counters. If no family is set for a job its title is the family.
+ * <p>
+ * The statistics of a family are kept until {@link #clear()} is called. Each family takes about
+ * 15 KB for its two histograms, so jobs with dynamic titles like "Indexing &lt;file&gt;" should be
+ * given a family, otherwise the statistics grow with every distinct title.
+ *
+ * <pre>
+ * JobStatistics statistics = new JobStatistics();
+ * Jobs.addMetricsListener(statistics);
+ * ...
+ * long p99 = statistics.get(family).getQueueLatency().getValueAtPercentile(99);
+ * </pre>
+ */
+public class JobStatistics extends JobMetricsAdapter {
+
+  private final ConcurrentMap<Object, FamilyStatistics> families =
+      new ConcurrentHashMap<Object, FamilyStatistics>();
+
+  @Override
+  public void jobFinished(JobExecutionRecord record) {
+    FamilyStatistics statistics = getOrCreate(record.getFamily());
+    statistics.record(record);
+  }
+
+  private FamilyStatistics getOrCreate(Object family) {
+    FamilyStatistics statistics = families.get(family);
+    if (statistics == null) {
+      statistics = new FamilyStatistics(family);
+      FamilyStatistics existing = families.putIfAbsent(family, statistics);
+      if (existing != null) {
+        statistics = existing;
+      }
+    }
+    return statistics;
+  }
+
+  /**
+   * Returns the statistics of the given family.
+   *
+   * @param family the family of the jobs
+   * @return the statistics, null if no job of the family has finished yet
+   */
+  public FamilyStatistics get(Object family) {
+    return families.get(family);
+  }
+
+  /**
+   * @return the statistics of all families with finished jobs, by family
+   */
+  public Map<Object, FamilyStatistics> getAll() {
+    return Collections.unmodifiableMap(families);
+  }
+
+  /**
+   * Removes the statistics of all families.
+   */
+  public void clear() {
+    families.clear();
+  }
+
+  /**
+   * The statistics of the jobs of one family.
+   */
+  public static final class FamilyStatistics {
+
+    private final Object family;
+    private final LatencyHistogram queueLatency = new LatencyHistogram();
+    private final LatencyHistogram runLatency = new LatencyHistogram();
+    private final AtomicLong finished = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong canceled = new AtomicLong();
+
+    FamilyStatistics(Object family) {
+      this.family = family;
+    }
+
+    void record(JobExecutionRecord record) {
+      if (record.hasStarted()) {
+        queueLatency.record(record.getQueueNanos());
+        runLatency.record(record.getRunNanos());
+      }
+      finished.incrementAndGet();
+      if (record.getSeverity() == IStatus.ERROR) {
+        failed.incrementAndGet();
+      } else if (record.getSeverity() == IStatus.CANCEL) {
+        canceled.incrementAndGet();
+      }
+    }
+
+    public Object getFamily() {
+      return family;
+    }
+
+    /**
+     * @return the histogram of the times the jobs have waited to be run after their scheduling
+     *         delay
+     */
+    public LatencyHistogram getQueueLatency() {
+      return queueLatency;
+    }
+
+    /**
+     * @return the histogram of the times the jobs have been running
+     */
+    public LatencyHistogram getRunLatency() {
+      return runLatency;
+    }
+
+    /**
+     * @return the number of finished jobs, including failed and canceled ones
+     */
+    public long getFinishedCount() {
+      return finished.get();
+    }
+
+    public long getFailedCount() {
+      return failed.get();
+    }
+
+    public long getCanceledCount() {
+      return canceled.get();
+    }
+
+    @Override
+    public String toString() {
+      return Objects.toStringHelper(this).add("family", family).add("finished", finished)
+          .add("failed", failed).add("canceled", canceled).add("queueLatency", queueLatency)
+          .add("runLatency", runLatency).toString();
+    }
+  }
+}
@@ -0,0 +1,38 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Tobias Baumann.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Tobias Baumann - initial API and implementation
+ ******************************************************************************/
+package de.baumato.jobs.builder;
+
+/**
+ * The codes of the statuses returned by jobs of the job builder, to tell particular outcomes apart
+ * from errors thrown by a job's runnable.
+ */
+public final class JobStatusCodes {
+
+  /**
+   * The code of the error status of a job which has been canceled because it has run longer than
+   * its timeout.
+   *
+   * @see JobBuilder#timeout(long, java.util.concurrent.TimeUnit)
+   */
+  public static final int TIMED_OUT = 1;
+
+  /**
+   * The code of the info status of a failed job attempt, the job is scheduled again. The status
+   * carries the exception of the failure.
+   *
+   * @see JobBuilder#retry(RetryPolicy)
+   */
+  public static final int RETRYING = 2;
+
+  private JobStatusCodes() {
+    // constants only
+  }
+}
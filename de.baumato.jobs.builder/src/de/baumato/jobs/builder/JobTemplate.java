@@ -0,0 +1,357 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Tobias Baumann.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Tobias Baumann - initial API and implementation
+ ******************************************************************************/
+package de.baumato.jobs.builder;
+
+import static com.google.common.base.Objects.firstNonNull;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.base.Strings.emptyToNull;
+import static com.google.common.base.Strings.nullToEmpty;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.IJobChangeListener;
+import org.eclipse.core.runtime.jobs.ISchedulingRule;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.jface.operation.IRunnableWithProgress;
+import org.eclipse.jface.resource.ImageDescriptor;
+
+import com.google.common.util.concurrent.ListenableFuture;
+
+import de.baumato.jobs.builder.JobBuilder.JobKind;
+
+/**
+ * Immutable and thread-safe configuration of jobs created by {@link JobBuilder#toTemplate()}.
+ * Everything that does not depend on the runnable (title, family, kind, priority, scheduling rule,
+ * user feedback, ...) is computed once, so a template can be used to create many jobs of the same
+ * kind that only differ in their runnables.
+ */
+public final class JobTemplate {
+
+  final String title;
+  final Object family;
+  /** false if the title is the family */
+  final boolean familySet;
+  final JobKind kind;
+  final Integer priority;
+  final ImageDescriptor image;
+  final UserFeedback userFeedback;
+  final IJobChangeListener[] listeners;
+  final JobStartCallback[] startCallbacks;
+  final JobDoneCallback[] doneCallbacks;
+  final ISchedulingRule schedulingRule;
+  final Object coalesceKey;
+  final long coalesceWindowMillis;
+  final ConcurrencyLimit concurrencyLimit;
+  final boolean onVirtualThread;
+  final JobExecutor executor;
+  final long progressIntervalNanos;
+  final boolean interruptOnCancel;
+  final long timeoutNanos;
+  final RetryPolicy retryPolicy;
+  /** the result of successfully finished jobs, shared by all jobs of this template */
+  final IStatus okStatus;
+
+  JobTemplate(JobBuilder builder) {
+    this.title = builder.title;
+    this.family = firstNonNull(builder.family, builder.title);
+    this.familySet = builder.family != null;
+    this.kind = builder.kind;
+    this.priority = builder.priority;
+    this.image = builder.image;
+    this.userFeedback = builder.userFeedback;
+    this.listeners = builder.listeners.toArray(new IJobChangeListener[builder.listeners.size()]);
+    this.startCallbacks =
+        builder.startCallbacks.toArray(new JobStartCallback[builder.startCallbacks.size()]);
+    this.doneCallbacks =
+        builder.doneCallbacks.toArray(new JobDoneCallback[builder.doneCallbacks.size()]);
+    this.schedulingRule = builder.schedulingRule;
+    this.coalesceKey = builder.coalesceKey;
+    this.coalesceWindowMillis = builder.coalesceWindowMillis;
+    this.onVirtualThread = builder.onVirtualThread;
+    this.executor = builder.executor;
+    this.progressIntervalNanos = builder.progressIntervalNanos;
+    this.interruptOnCancel = builder.interruptOnCancel;
+    this.timeoutNanos = builder.timeoutNanos;
+    this.retryPolicy = builder.retryPolicy;
+    this.concurrencyLimit = builder.maxConcurrencyName == null ? null
+        : ConcurrencyLimit.named(builder.maxConcurrencyName, builder.maxConcurrency);
+    this.okStatus = new Status(IStatus.OK, InternalJob.PLUGIN_ID, IStatus.OK,
+        createJobCompletionTitle(builder), null);
+  }
+
+  private static String createJobCompletionTitle(JobBuilder builder) {
+    String jct = nullToEmpty(builder.jobCompletionTitle).trim();
+    return firstNonNull(emptyToNull(jct), builder.title + ": Done.");
+  }
+
+  /**
+   * Builds a job processing the given runnable.
+   *
+   * @see JobBuilder#runnable(Runnable)
+   * @param runnable the runnable
+   * @return the built job
+   */
+  public Job build(Runnable runnable) {
+    return build(new RunnableAdapter(title, checkNotNull(runnable, "Given runnable is null.")));
+  }
+
+  /**
+   * Builds a job processing the given runnable with progress.
+   *
+   * @see JobBuilder#runnable(IRunnableWithProgress)
+   * @param runnable the runnable
+   * @return the built job
+   */
+  public Job build(IRunnableWithProgress runnable) {
+    checkState(coalesceKey == null, "Coalesced jobs can only be built and scheduled at once.");
+    checkState(executor == null, "Jobs of a custom executor can only be scheduled asynchronously.");
+    return new InternalJob(this, checkNotNull(runnable, "Given runnable is null."));
+  }
+
+  /**
+   * Builds a job computing a value with the given callable.
+   *
+   * @see JobBuilder#callable(Callable)
+   * @param callable the callable computing the value
+   * @return the built job
+   */
+  public <V> ResultJob<V> build(Callable<V> callable) {
+    checkNotNull(callable, "Given callable is null.");
+    return asResultJob(build(new CallableAdapter<V>(title, callable)));
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <V> ResultJob<V> asResultJob(Job job) {
+    // the value of the job is computed by the callable of type V
+    return (ResultJob<V>) job;
+  }
+
+  /**
+   * Builds a job processing the given runnable and schedules it.
+   *
+   * @param runnable the runnable
+   * @return the job
+   */
+  public Job buildAndSchedule(Runnable runnable) {
+    return buildAndScheduleWithDelay(runnable, 0, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Builds a job processing the given runnable with progress and schedules it.
+   *
+   * @param runnable the runnable
+   * @return the job
+   */
+  public Job buildAndSchedule(IRunnableWithProgress runnable) {
+    return schedule(checkNotNull(runnable, "Given runnable is null."), 0);
+  }
+
+  /**
+   * Builds a job processing the given runnable and schedules it to be run after the specified
+   * delay.
+   *
+   * @see JobBuilder#buildAndScheduleWithDelay(long, TimeUnit)
+   * @param runnable the runnable
+   * @param delay a time delay in given time unit before the job should run
+   * @param timeUnit the time unit of the delay
+   * @return the job
+   */
+  public Job buildAndScheduleWithDelay(Runnable runnable, long delay, TimeUnit timeUnit) {
+    checkNotNull(runnable, "Given runnable is null.");
+    return schedule(new RunnableAdapter(title, runnable), timeUnit.toMillis(delay));
+  }
+
+  /**
+   * Builds a job processing the given runnable and schedules it to be run periodically at a fixed
+   * rate.
+   *
+   * @see JobBuilder#buildAndScheduleAtFixedRate(long, long, TimeUnit)
+   * @param runnable the runnable
+   * @param initialDelay the delay before the first run
+   * @param period the time between the start of two runs
+   * @param timeUnit the time unit of the delay and the period
+   * @return the job
+   */
+  public Job buildAndScheduleAtFixedRate(Runnable runnable, long initialDelay, long period,
+      TimeUnit timeUnit) {
+    checkNotNull(runnable, "Given runnable is null.");
+    return schedulePeriodically(new RunnableAdapter(title, runnable), initialDelay, period,
+        timeUnit, true);
+  }
+
+  /**
+   * Builds a job processing the given runnable and schedules it to be run periodically with a fixed
+   * delay between the runs.
+   *
+   * @see JobBuilder#buildAndScheduleWithFixedDelay(long, long, TimeUnit)
+   * @param runnable the runnable
+   * @param initialDelay the delay before the first run
+   * @param delay the time between the end of a run and the start of the next one
+   * @param timeUnit the time unit of the delays
+   * @return the job
+   */
+  public Job buildAndScheduleWithFixedDelay(Runnable runnable, long initialDelay, long delay,
+      TimeUnit timeUnit) {
+    checkNotNull(runnable, "Given runnable is null.");
+    return schedulePeriodically(new RunnableAdapter(title, runnable), initialDelay, delay,
+        timeUnit, false);
+  }
+
+  /**
+   * Builds a job processing the given runnable and schedules it. The returned future is completed
+   * with the job's result as soon as the job has finished. Canceling the future cancels the job.
+   *
+   * @param runnable the runnable
+   * @return the future of the job's result
+   */
+  public ListenableFuture<IStatus> buildAndScheduleAsync(Runnable runnable) {
+    checkNotNull(runnable, "Given runnable is null.");
+    return scheduleAsync(new RunnableAdapter(title, runnable), 0);
+  }
+
+  /**
+   * Builds a job processing the given runnable with progress and schedules it.
+   *
+   * @see #buildAndScheduleAsync(Runnable)
+   * @param runnable the runnable
+   * @return the future of the job's result
+   */
+  public ListenableFuture<IStatus> buildAndScheduleAsync(IRunnableWithProgress runnable) {
+    return scheduleAsync(checkNotNull(runnable, "Given runnable is null."), 0);
+  }
+
+  /**
+   * Builds a job computing a value with the given callable and schedules it. The returned future is
+   * completed with the computed value, fails with the exception thrown by the callable or gets
+   * canceled if the job is canceled. Canceling the future cancels the job.
+   *
+   * @param callable the callable computing the value
+   * @return the future of the computed value
+   */
+  public <V> ListenableFuture<V> buildAndScheduleAsync(Callable<V> callable) {
+    checkState(coalesceKey == null, "Coalesced jobs cannot be scheduled asynchronously.");
+    checkState(executor == null, "Jobs of a custom executor cannot compute values.");
+    CallableAdapter<V> adapter =
+        new CallableAdapter<V>(title, checkNotNull(callable, "Given callable is null."));
+    InternalJob job = new InternalJob(this, adapter);
+    JobFuture<V> future = JobFuture.forValue(job, adapter);
+    job.setFuture(future);
+    schedule(job, 0);
+    return future;
+  }
+
+  /**
+   * Schedules the given runnable with respect to the scheduling behaviour of this template.
+   */
+  Job schedule(IRunnableWithProgress runnable, long delayMillis) {
+    checkState(executor == null, "Jobs of a custom executor can only be scheduled asynchronously.");
+    if (coalesceKey != null) {
+      checkState(retryPolicy == null, "Coalesced jobs cannot be retried.");
+      checkState(concurrencyLimit == null, "Coalesced jobs do not support a concurrency limit.");
+      return CoalescingJobs.schedule(this, runnable, delayMillis);
+    }
+    InternalJob job = new InternalJob(this, runnable);
+    schedule(job, delayMillis);
+    return job;
+  }
+
+  /**
+   * Schedules a job running the given runnable periodically, the job reschedules itself.
+   */
+  Job schedulePeriodically(IRunnableWithProgress runnable, long initialDelay, long period,
+      TimeUnit timeUnit, boolean fixedRate) {
+    checkArgument(initialDelay >= 0, "Given delay is negative.");
+    checkArgument(period > 0, "Given period is not positive.");
+    checkState(executor == null, "Jobs of a custom executor can only be scheduled asynchronously.");
+    checkState(coalesceKey == null, "Coalesced jobs cannot be scheduled periodically.");
+    InternalJob job = new InternalJob(this, runnable);
+    job.setPeriod(timeUnit.toNanos(period), fixedRate, timeUnit.toNanos(initialDelay));
+    schedule(job, timeUnit.toMillis(initialDelay));
+    return job;
+  }
+
+  ListenableFuture<IStatus> scheduleAsync(IRunnableWithProgress runnable, long delayMillis) {
+    checkAsyncSupport();
+    if (executor != null) {
+      return executor.execute(this, runnable, RateLimits.reserve(family, delayMillis));
+    }
+    InternalJob job = new InternalJob(this, runnable);
+    JobFuture<IStatus> future = JobFuture.forStatus(job);
+    job.setFuture(future);
+    schedule(job, delayMillis);
+    return future;
+  }
+
+  /**
+   * Rejects the settings which do not allow to schedule jobs of this template asynchronously.
+   */
+  void checkAsyncSupport() {
+    checkState(coalesceKey == null, "Coalesced jobs cannot be scheduled asynchronously.");
+    if (executor != null) {
+      checkExecutorSupport();
+    }
+  }
+
+  /**
+   * Rejects the settings relying on an Eclipse job or the job manager, which custom executors do
+   * not provide.
+   */
+  private void checkExecutorSupport() {
+    checkState(retryPolicy == null, "Jobs of a custom executor cannot be retried.");
+    checkState(listeners.length == 0, "Jobs of a custom executor do not support job listeners.");
+    checkState(startCallbacks.length == 0 && doneCallbacks.length == 0,
+        "Jobs of a custom executor do not support start and done callbacks.");
+    checkState(concurrencyLimit == null,
+        "Jobs of a custom executor do not support a concurrency limit.");
+    checkState(!onVirtualThread, "Jobs of a custom executor cannot run on virtual threads.");
+  }
+
+  /**
+   * Schedules the given job of this template with respect to its rate and concurrency limits.
+   */
+  void schedule(InternalJob job, long delayMillis) {
+    if (concurrencyLimit != null) {
+      concurrencyLimit.schedule(job, delayMillis);
+    } else {
+      job.scheduleWithRateLimit(delayMillis);
+    }
+  }
+
+  public String getTitle() {
+    return title;
+  }
+
+  public Object getFamily() {
+    return family;
+  }
+
+  public JobKind getKind() {
+    return kind;
+  }
+
+  /**
+   * Returns the priority of the jobs, e.g. <code>Job.SHORT</code>.
+   *
+   * @return the priority, <code>Job.LONG</code> if none has been set
+   */
+  public int getPriority() {
+    return priority != null ? priority.intValue() : Job.LONG;
+  }
+
+  public ISchedulingRule getSchedulingRule() {
+    return schedulingRule;
+  }
+}
@@ -13,6 +13,10 @@
  */
 package de.baumato.jobs.builder;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.concurrent.TimeUnit;
+
 public class Jobs {
 
   private Jobs() {}
@@ -43,4 +47,98 @@ public class Jobs {
   public static JobBuilder builder(String title, Runnable runnable) {
     return builder().title(title).runnable(runnable);
   }
+
+  /**
+   * Returns a batch builder using a default job builder as template. Use
+   * {@link JobBatchBuilder#template(JobBuilder)} to configure the jobs of the batch.
+   *
+   * @return a new batch builder instance
+   */
+  public static JobBatchBuilder batch() {
+    return batch(builder());
+  }
+
+  /**
+   * Returns a batch builder creating all jobs with the configuration of the given builder.
+   *
+   * @param template the builder whose configuration is shared by all jobs of the batch
+   * @return a new batch builder instance
+   */
+  public static JobBatchBuilder batch(JobBuilder template) {
+    return new JobBatchBuilder(template);
+  }
+
+  /**
+   * Returns an empty graph of jobs depending on each other.
+   *
+   * @return a new graph instance
+   */
+  public static JobGraph graph() {
+    return new JobGraph();
+  }
+
+  /**
+   * <p>
+   * Limits the rate with which jobs of the given family are run. Each job of the family scheduled
+   * by a {@link JobBuilder} or {@link JobTemplate} takes a token from a bucket that is refilled
+   * with the given rate and stores up to <code>burst</code> tokens. The token is taken at the time
+   * the job starts, i.e. after its scheduling delay. If the bucket is empty at that time the job
+   * is scheduled with an appropriate longer delay. Waiting jobs are sleeping in the job manager
+   * and do not hold worker threads.
+   * <p>
+   * Retries and periodic runs of a job take a token each, too. Jobs rescheduled directly using
+   * {@code Job.schedule()} are not throttled. Coalesced jobs are
+   * not throttled either, they are limited by their window already.
+   *
+   * @see JobBuilder#family(Object)
+   * @param family the family to throttle, if no family is set for a job its title is the family
+   * @param jobsPerSecond the number of jobs per second, must be positive
+   * @param burst the maximum number of jobs that may run without delay after a pause
+   */
+  public static void limitRate(Object family, double jobsPerSecond, int burst) {
+    RateLimits.set(family, jobsPerSecond, burst);
+  }
+
+  /**
+   * Removes the rate limit of the given family.
+   *
+   * @see #limitRate(Object, double, int)
+   * @param family the family
+   */
+  public static void removeRateLimit(Object family) {
+    RateLimits.remove(family);
+  }
+
+  /**
+   * Sets the time the UI thread may spend per frame to run immediate user feedback of finished
+   * jobs. If many jobs finish at once, their feedback is spread over several frames, so the UI
+   * keeps responding. The default is 10 milliseconds.
+   *
+   * @see JobBuilder#immediateUserFeedback(UserFeedbackRunnable)
+   * @param budget the time budget, must be positive
+   * @param timeUnit the time unit of the budget
+   */
+  public static void setUserFeedbackTimeBudget(long budget, TimeUnit timeUnit) {
+    checkArgument(budget > 0, "Given budget is not positive.");
+    JobPresentation.userFeedbackTimeBudgetNanos = timeUnit.toNanos(budget);
+  }
+
+  /**
+   * Registers a listener notified of the life cycle of all jobs built by the job builder, e.g. a
+   * {@link JobStatistics}. As long as no listener is registered, jobs do not record any metrics.
+   *
+   * @param listener the listener
+   */
+  public static void addMetricsListener(JobMetricsListener listener) {
+    JobMetrics.addListener(listener);
+  }
+
+  /**
+   * Removes a listener registered using {@link #addMetricsListener(JobMetricsListener)}.
+   *
+   * @param listener the listener
+   */
+  public static void removeMetricsListener(JobMetricsListener listener) {
+    JobMetrics.removeListener(listener);
+  }
 }
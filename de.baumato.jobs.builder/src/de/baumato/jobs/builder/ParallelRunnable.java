@@ -0,0 +1,329 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Tobias Baumann.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Tobias Baumann - initial API and implementation
+ ******************************************************************************/
+package de.baumato.jobs.builder;
+
+import static com.google.common.base.Objects.firstNonNull;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.MultiStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.jface.operation.IRunnableWithProgress;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * <p>
+ * Runs subtasks in parallel on a pool shared by all jobs that has as many threads as processors
+ * are available. The thread running this runnable processes subtasks as well, so all subtasks get
+ * processed even if the pool is busy.
+ * <p>
+ * Each subtask gets an equal share of the monitor's progress. The statuses of all subtasks are
+ * aggregated in a <code>MultiStatus</code>. If a subtask fails, the remaining subtasks are still
+ * processed and an <code>InvocationTargetException</code> with a <code>CoreException</code>
+ * carrying the <code>MultiStatus</code> is thrown, which becomes the job result. If the monitor is
+ * canceled, no further subtasks are started and an <code>InterruptedException</code> is thrown.
+ * A subtask which has been interrupted or canceled makes the job canceled as well, unless another
+ * subtask has failed.
+ */
+public class ParallelRunnable implements IRunnableWithProgress {
+
+  /** the monitor ticks of a single subtask, if the number of subtasks allows it */
+  private static final int SUBTASK_TICKS = 1000;
+
+  private static final ExecutorService POOL = createPool();
+
+  private final String title;
+  private final List<IRunnableWithProgress> subtasks;
+  /** the ticks of a single subtask, less than usual if there are very many subtasks */
+  private final int subtaskTicks;
+
+  /**
+   * Constructs a new instance.
+   *
+   * @param title the title to display in the progress monitor
+   * @param subtasks the subtasks to run in parallel, not empty
+   */
+  public ParallelRunnable(String title, Iterable<? extends IRunnableWithProgress> subtasks) {
+    this.title = checkNotNull(title);
+    this.subtasks = ImmutableList.copyOf(checkNotNull(subtasks));
+    checkArgument(!this.subtasks.isEmpty(), "No subtasks given.");
+    // the total work must not overflow
+    this.subtaskTicks = Math.min(SUBTASK_TICKS, Integer.MAX_VALUE / this.subtasks.size());
+  }
+
+  private static ExecutorService createPool() {
+    int threads = Runtime.getRuntime().availableProcessors();
+    ThreadPoolExecutor pool =
+        new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(), new ThreadFactoryBuilder()
+                .setNameFormat("JobBuilder parallel worker %d").setDaemon(true).build());
+    pool.allowCoreThreadTimeOut(true);
+    return pool;
+  }
+
+  @Override
+  public void run(IProgressMonitor monitor) throws InvocationTargetException,
+      InterruptedException {
+    IProgressMonitor progress = monitor == null ? new NullProgressMonitor() : monitor;
+    progress.beginTask(title, subtasks.size() * subtaskTicks);
+    try {
+      Execution execution = new Execution(progress);
+      List<Worker> workers = startWorkers(execution);
+      try {
+        execution.run();
+      } catch (Error e) {
+        // the job ends with the error, so the workers must not process further subtasks after it
+        execution.skipRemainingSubtasks();
+        awaitWorkers(workers, e);
+      }
+      awaitWorkers(workers, null);
+      execution.checkResult();
+    } finally {
+      progress.done();
+    }
+  }
+
+  private List<Worker> startWorkers(Execution execution) {
+    int workerCount = Math.min(subtasks.size() - 1, Runtime.getRuntime().availableProcessors());
+    List<Worker> workers = Lists.newArrayListWithCapacity(workerCount);
+    for (int i = 0; i < workerCount; i++) {
+      Worker worker = new Worker(execution);
+      worker.future = POOL.submit(worker);
+      workers.add(worker);
+    }
+    return workers;
+  }
+
+  /**
+   * Waits for all workers. An error thrown by a subtask in a worker is rethrown in the job's thread
+   * when all workers are done, like an error thrown by a subtask in the job's thread. The given
+   * error of the job's thread takes precedence over the workers' errors.
+   */
+  private void awaitWorkers(List<Worker> workers, Error jobThreadError)
+      throws InterruptedException {
+    Error error = jobThreadError;
+    for (Worker worker : workers) {
+      Error workerError = worker.await();
+      if (error == null) {
+        error = workerError;
+      }
+    }
+    if (error != null) {
+      throw error;
+    }
+  }
+
+  public String getTitle() {
+    return title;
+  }
+
+  private final class Execution implements Runnable {
+
+    private final IProgressMonitor monitor;
+    private final CancellationToken token = CancellationToken.current();
+    private final AtomicInteger nextSubtask = new AtomicInteger();
+    private final IStatus[] results = new IStatus[subtasks.size()];
+
+    Execution(IProgressMonitor monitor) {
+      this.monitor = monitor;
+    }
+
+    @Override
+    public void run() {
+      // let the subtasks see the job's cancellation token in the pool's threads, too
+      boolean foreignThread = token != CancellationToken.current();
+      CancellationToken previousToken = foreignThread ? CancellationToken.setCurrent(token) : null;
+      try {
+        int index;
+        while (!monitor.isCanceled() && (index = nextSubtask.getAndIncrement()) < results.length) {
+          results[index] = runSubtask(subtasks.get(index));
+        }
+      } finally {
+        if (foreignThread) {
+          CancellationToken.setCurrent(previousToken);
+        }
+      }
+    }
+
+    /**
+     * Lets no further subtasks be started, the subtasks already running are finished.
+     */
+    void skipRemainingSubtasks() {
+      nextSubtask.set(results.length);
+    }
+
+    private IStatus runSubtask(IRunnableWithProgress subtask) {
+      SubtaskMonitor subtaskMonitor = new SubtaskMonitor(monitor, subtaskTicks);
+      try {
+        subtask.run(subtaskMonitor);
+        return Status.OK_STATUS;
+      } catch (InterruptedException e) {
+        return Status.CANCEL_STATUS;
+      } catch (OperationCanceledException e) {
+        return Status.CANCEL_STATUS;
+      } catch (InvocationTargetException e) {
+        return createErrorStatus(e.getTargetException());
+      } catch (RuntimeException e) {
+        return createErrorStatus(e);
+      } finally {
+        subtaskMonitor.done();
+      }
+    }
+
+    private IStatus createErrorStatus(Throwable t) {
+      String msg = firstNonNull(t.getMessage(), t.getClass().getName());
+      return new Status(IStatus.ERROR, InternalJob.PLUGIN_ID, msg, t);
+    }
+
+    void checkResult() throws InterruptedException, InvocationTargetException {
+      if (monitor.isCanceled()) {
+        throw new InterruptedException();
+      }
+      MultiStatus status =
+          new MultiStatus(InternalJob.PLUGIN_ID, IStatus.OK, String.format(
+              "Subtasks of '%s' finished with error(s).", title), null);
+      boolean canceled = false;
+      for (IStatus result : results) {
+        if (result == null) {
+          continue;
+        }
+        if (result.matches(IStatus.CANCEL)) {
+          canceled = true;
+        } else {
+          status.add(result);
+        }
+      }
+      if (status.matches(IStatus.ERROR)) {
+        throw new InvocationTargetException(new CoreException(status));
+      }
+      if (canceled) {
+        throw new InterruptedException();
+      }
+    }
+  }
+
+  /**
+   * Helps the thread running the job to process the subtasks. A worker that did not start until the
+   * job's thread took all subtasks is skipped.
+   */
+  private static final class Worker implements Runnable {
+
+    private final Execution execution;
+    private final AtomicBoolean started = new AtomicBoolean();
+    private Future<?> future;
+
+    Worker(Execution execution) {
+      this.execution = execution;
+    }
+
+    @Override
+    public void run() {
+      if (started.compareAndSet(false, true)) {
+        execution.run();
+      }
+    }
+
+    /**
+     * @return the error thrown by a subtask in this worker, null if none
+     */
+    Error await() throws InterruptedException {
+      if (started.compareAndSet(false, true)) {
+        future.cancel(false);
+        return null;
+      }
+      try {
+        future.get();
+        return null;
+      } catch (ExecutionException e) {
+        // the execution catches all exceptions, only errors get here
+        Throwable cause = e.getCause();
+        return cause instanceof Error ? (Error) cause : new AssertionError(cause);
+      }
+    }
+  }
+
+  /**
+   * Translates the progress of a subtask to its share of the job monitor. Used by one thread only,
+   * the job monitor is accessed synchronized.
+   */
+  private static final class SubtaskMonitor extends NullProgressMonitor {
+
+    private final IProgressMonitor parent;
+    private final int ticks;
+    private double scale = 0;
+    private double reported = 0;
+
+    SubtaskMonitor(IProgressMonitor parent, int ticks) {
+      this.parent = parent;
+      this.ticks = ticks;
+    }
+
+    @Override
+    public void beginTask(String name, int totalWork) {
+      scale = totalWork > 0 ? (double) ticks / totalWork : 0;
+    }
+
+    @Override
+    public void internalWorked(double work) {
+      report(work * scale);
+    }
+
+    @Override
+    public void worked(int work) {
+      internalWorked(work);
+    }
+
+    @Override
+    public void done() {
+      report(ticks - reported);
+    }
+
+    private void report(double increment) {
+      double remaining = this.ticks - reported;
+      double toReport = Math.min(increment, remaining);
+      if (toReport > 0) {
+        reported += toReport;
+        synchronized (parent) {
+          parent.internalWorked(toReport);
+        }
+      }
+    }
+
+    @Override
+    public boolean isCanceled() {
+      return parent.isCanceled();
+    }
+
+    @Override
+    public void setCanceled(boolean value) {
+      parent.setCanceled(value);
+    }
+  }
+}
@@ -0,0 +1,201 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Tobias Baumann.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Tobias Baumann - initial API and implementation
+ ******************************************************************************/
+package de.baumato.jobs.builder;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.Lists;
+
+/**
+ * Registry of the rate limits per job family. A rate limit is a token bucket: every job takes a
+ * token at the time it starts, tokens are refilled with the configured rate and up to
+ * <code>burst</code> tokens can be stored. A job is booked for the earliest time not before its
+ * delay has elapsed at which a token is available, and it is scheduled with the delay until then,
+ * so it waits in the job manager without holding a worker thread.
+ *
+ * @see Jobs#limitRate(Object, double, int)
+ */
+final class RateLimits {
+
+  private static final ConcurrentMap<Object, TokenBucket> LIMITS =
+      new ConcurrentHashMap<Object, TokenBucket>();
+
+  private RateLimits() {}
+
+  static void set(Object family, double jobsPerSecond, int burst) {
+    checkNotNull(family, "Given family is null.");
+    LIMITS.put(family, new TokenBucket(jobsPerSecond, burst, System.nanoTime()));
+  }
+
+  static void remove(Object family) {
+    LIMITS.remove(checkNotNull(family, "Given family is null."));
+  }
+
+  /**
+   * Books the start of a job of the given family which should run after the given delay.
+   *
+   * @return the delay in milliseconds after which the job may run, not less than the given delay
+   */
+  static long reserve(Object family, long delayMillis) {
+    if (LIMITS.isEmpty()) {
+      return delayMillis;
+    }
+    TokenBucket bucket = LIMITS.get(family);
+    if (bucket == null) {
+      return delayMillis;
+    }
+    long waitNanos =
+        bucket.reserve(System.nanoTime(), TimeUnit.MILLISECONDS.toNanos(delayMillis));
+    // round up, a job must not run before its token is available
+    return (waitNanos + TimeUnit.MILLISECONDS.toNanos(1) - 1) / 1000000L;
+  }
+
+  /**
+   * <p>
+   * Token bucket booking the start times of jobs. The tokens stored at the time of the last
+   * booking are kept together with the bookings of jobs which start later, e.g. delayed jobs. A
+   * new job gets the earliest start time not before its delay at which a token is available
+   * without taking the token of any job booked later. So a delayed job neither holds back jobs
+   * starting earlier nor lets jobs run without a token.
+   * <p>
+   * Tokens are only refilled up to the current time; tokens of the future are not stored before
+   * their time has come.
+   */
+  static final class TokenBucket {
+
+    /** tolerance for rounding errors of token levels */
+    private static final double EPSILON = 1e-9;
+
+    private final double intervalNanos;
+    private final int burst;
+    private double storedTokens;
+    private long refilledNanos;
+    /** the start times of booked jobs after the time of refilling, in ascending order */
+    private final List<Long> bookings = Lists.newArrayList();
+
+    TokenBucket(double tokensPerSecond, int burst, long nowNanos) {
+      checkArgument(tokensPerSecond > 0, "Given rate is not positive.");
+      checkArgument(burst > 0, "Given burst is not positive.");
+      this.intervalNanos = TimeUnit.SECONDS.toNanos(1) / tokensPerSecond;
+      this.burst = burst;
+      this.storedTokens = burst;
+      this.refilledNanos = nowNanos;
+    }
+
+    /**
+     * Books the start of a job which should run after the given delay.
+     *
+     * @return the nanoseconds to wait after the given time until the job may start
+     */
+    synchronized long reserve(long nowNanos, long delayNanos) {
+      refill(nowNanos);
+      long startNanos = Math.max(refilledNanos, nowNanos + delayNanos);
+      while (true) {
+        startNanos = earliestStart(startNanos);
+        int conflict = firstConflict(startNanos);
+        if (conflict < 0) {
+          bookings.add(insertionIndex(startNanos), startNanos);
+          return startNanos - nowNanos;
+        }
+        // the job would take the token of a later booking, so it has to start after it
+        startNanos = bookings.get(conflict);
+      }
+    }
+
+    /**
+     * Takes the tokens of the bookings which have started until the given time and refills the
+     * bucket up to it.
+     */
+    private void refill(long nowNanos) {
+      while (!bookings.isEmpty() && bookings.get(0) <= nowNanos) {
+        long startNanos = bookings.remove(0);
+        storedTokens = level(storedTokens, refilledNanos, startNanos) - 1;
+        refilledNanos = startNanos;
+      }
+      if (nowNanos > refilledNanos) {
+        storedTokens = level(storedTokens, refilledNanos, nowNanos);
+        refilledNanos = nowNanos;
+      }
+    }
+
+    /**
+     * Returns the earliest time not before the given one at which a token is left after the jobs
+     * booked until then have taken theirs.
+     */
+    private long earliestStart(long fromNanos) {
+      long startNanos = fromNanos;
+      while (true) {
+        double tokens = storedTokens;
+        long time = refilledNanos;
+        for (int i = 0, n = insertionIndex(startNanos); i < n; i++) {
+          tokens = level(tokens, time, bookings.get(i)) - 1;
+          time = bookings.get(i);
+        }
+        tokens = level(tokens, time, startNanos);
+        if (tokens >= 1 - EPSILON) {
+          return startNanos;
+        }
+        startNanos += (long) Math.ceil((1 - tokens) * intervalNanos);
+      }
+    }
+
+    /**
+     * Returns the index of the first booking left without a token if a job started at the given
+     * time, -1 if all bookings keep their tokens.
+     */
+    private int firstConflict(long startNanos) {
+      int index = insertionIndex(startNanos);
+      double tokens = storedTokens;
+      long time = refilledNanos;
+      for (int i = 0; i < index; i++) {
+        tokens = level(tokens, time, bookings.get(i)) - 1;
+        time = bookings.get(i);
+      }
+      tokens = level(tokens, time, startNanos) - 1;
+      time = startNanos;
+      for (int i = index; i < bookings.size(); i++) {
+        tokens = level(tokens, time, bookings.get(i)) - 1;
+        time = bookings.get(i);
+        if (tokens < -EPSILON) {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    /** returns the index after all bookings starting not later than the given time */
+    private int insertionIndex(long startNanos) {
+      int index = bookings.size();
+      while (index > 0 && bookings.get(index - 1) > startNanos) {
+        index--;
+      }
+      return index;
+    }
+
+    /** returns the tokens stored at the given time, refilled since the given time of a level */
+    private double level(double tokens, long sinceNanos, long nanos) {
+      return Math.min(burst, tokens + (nanos - sinceNanos) / intervalNanos);
+    }
+
+    @Override
+    public String toString() {
+      return Objects.toStringHelper(this).add("intervalNanos", (long) intervalNanos)
+          .add("burst", burst).add("bookings", bookings.size()).toString();
+    }
+  }
+}
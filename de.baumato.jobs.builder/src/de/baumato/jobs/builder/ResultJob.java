@@ -0,0 +1,37 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Tobias Baumann.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Tobias Baumann - initial API and implementation
+ ******************************************************************************/
+package de.baumato.jobs.builder;
+
+import org.eclipse.core.runtime.jobs.Job;
+
+/**
+ * A job computing a value. The value is kept alongside the job's result, so later stages can take
+ * it directly from the job (e.g. in {@code IJobChangeListener.done()}) instead of passing it around
+ * through shared fields.
+ *
+ * @see JobBuilder#callable(java.util.concurrent.Callable)
+ * @param <T> the type of the computed value
+ */
+public abstract class ResultJob<T> extends Job {
+
+  /** package private constructor */
+  ResultJob(String name) {
+    super(name);
+  }
+
+  /**
+   * Returns the value computed by the last run of this job.
+   *
+   * @return the value, or null if the job did not run yet, is running or did not finish
+   *         successfully.
+   */
+  public abstract T getValue();
+}
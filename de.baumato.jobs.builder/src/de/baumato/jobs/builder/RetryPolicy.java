@@ -0,0 +1,174 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Tobias Baumann.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Tobias Baumann - initial API and implementation
+ ******************************************************************************/
+package de.baumato.jobs.builder;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.Objects;
+
+/**
+ * <p>
+ * Describes how a job finishing with an error is retried: the same job is scheduled again after a
+ * delay growing exponentially with each failed attempt, up to a maximum delay. A random jitter
+ * spreads the retries of many jobs failing at the same time, e.g. because a server is down:
+ *
+ * <pre>
+ * RetryPolicy policy = RetryPolicy.exponentialBackoff(100, TimeUnit.MILLISECONDS)
+ *     .maxAttempts(5).maxDelay(10, TimeUnit.SECONDS);
+ * </pre>
+ * <p>
+ * Only errors are retried, canceled jobs are not. A policy is immutable, apart from the retry
+ * metrics, and may be shared by many jobs. Each method configuring it returns a new policy with
+ * its own metrics.
+ *
+ * @see JobBuilder#retry(RetryPolicy)
+ */
+public final class RetryPolicy {
+
+  private static final Random RANDOM = new Random();
+
+  private final long initialDelayMillis;
+  private final long maxDelayMillis;
+  private final double multiplier;
+  private final double jitter;
+  private final int maxAttempts;
+
+  private final AtomicLong retries = new AtomicLong();
+  private final AtomicLong recoveries = new AtomicLong();
+  private final AtomicLong exhaustions = new AtomicLong();
+
+  private RetryPolicy(long initialDelayMillis, long maxDelayMillis, double multiplier,
+      double jitter, int maxAttempts) {
+    this.initialDelayMillis = initialDelayMillis;
+    this.maxDelayMillis = maxDelayMillis;
+    this.multiplier = multiplier;
+    this.jitter = jitter;
+    this.maxAttempts = maxAttempts;
+  }
+
+  /**
+   * Creates a policy retrying after the given initial delay, which is doubled after each failed
+   * attempt. The policy defaults to at most 3 attempts, a maximum delay of one minute and a jitter
+   * of 0.5.
+   *
+   * @param initialDelay the delay before the first retry, must not be negative
+   * @param timeUnit the time unit of the delay
+   * @return the policy
+   */
+  public static RetryPolicy exponentialBackoff(long initialDelay, TimeUnit timeUnit) {
+    checkArgument(initialDelay >= 0, "Given delay is negative.");
+    long initialDelayMillis = timeUnit.toMillis(initialDelay);
+    return new RetryPolicy(initialDelayMillis, TimeUnit.MINUTES.toMillis(1), 2, 0.5, 3);
+  }
+
+  /**
+   * @param maxAttempts the maximum number of runs including the first one, must be positive
+   * @return a policy like this one but with the given maximum number of attempts
+   */
+  public RetryPolicy maxAttempts(int maxAttempts) {
+    checkArgument(maxAttempts > 0, "Given number of attempts is not positive.");
+    return new RetryPolicy(initialDelayMillis, maxDelayMillis, multiplier, jitter, maxAttempts);
+  }
+
+  /**
+   * @param maxDelay the maximum delay between two attempts, must not be negative
+   * @param timeUnit the time unit of the delay
+   * @return a policy like this one but with the given maximum delay
+   */
+  public RetryPolicy maxDelay(long maxDelay, TimeUnit timeUnit) {
+    checkArgument(maxDelay >= 0, "Given delay is negative.");
+    return new RetryPolicy(initialDelayMillis, timeUnit.toMillis(maxDelay), multiplier, jitter,
+        maxAttempts);
+  }
+
+  /**
+   * @param multiplier the factor the delay grows with after each failed attempt, at least 1
+   * @return a policy like this one but with the given multiplier
+   */
+  public RetryPolicy multiplier(double multiplier) {
+    checkArgument(multiplier >= 1, "Given multiplier is less than 1.");
+    return new RetryPolicy(initialDelayMillis, maxDelayMillis, multiplier, jitter, maxAttempts);
+  }
+
+  /**
+   * @param jitter the fraction of the delay which is randomized, between 0 (the exact delay) and 1
+   *        (a random delay between 0 and the exact delay)
+   * @return a policy like this one but with the given jitter
+   */
+  public RetryPolicy jitter(double jitter) {
+    checkArgument(jitter >= 0 && jitter <= 1, "Given jitter is not between 0 and 1.");
+    return new RetryPolicy(initialDelayMillis, maxDelayMillis, multiplier, jitter, maxAttempts);
+  }
+
+  public int getMaxAttempts() {
+    return maxAttempts;
+  }
+
+  /**
+   * @return the number of retries scheduled by jobs of this policy
+   */
+  public long getRetryCount() {
+    return retries.get();
+  }
+
+  /**
+   * @return the number of jobs of this policy which have succeeded after a retry
+   */
+  public long getRecoveryCount() {
+    return recoveries.get();
+  }
+
+  /**
+   * @return the number of jobs of this policy which have failed in their last attempt
+   */
+  public long getExhaustionCount() {
+    return exhaustions.get();
+  }
+
+  /**
+   * Returns the delay before the next attempt, after the given number of failed attempts.
+   */
+  long nextDelayMillis(int failedAttempts) {
+    double delay = initialDelayMillis * Math.pow(multiplier, failedAttempts - 1);
+    delay = Math.min(delay, maxDelayMillis);
+    if (jitter > 0) {
+      delay -= delay * jitter * RANDOM.nextDouble();
+    }
+    return (long) delay;
+  }
+
+  boolean canRetry(int failedAttempts) {
+    return failedAttempts < maxAttempts;
+  }
+
+  void retried() {
+    retries.incrementAndGet();
+  }
+
+  void recovered() {
+    recoveries.incrementAndGet();
+  }
+
+  void exhausted() {
+    exhaustions.incrementAndGet();
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(this).add("initialDelayMillis", initialDelayMillis)
+        .add("maxDelayMillis", maxDelayMillis).add("multiplier", multiplier).add("jitter", jitter)
+        .add("maxAttempts", maxAttempts).toString();
+  }
+}
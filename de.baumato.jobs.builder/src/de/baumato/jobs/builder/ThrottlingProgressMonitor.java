@@ -0,0 +1,114 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Tobias Baumann.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Tobias Baumann - initial API and implementation
+ ******************************************************************************/
+package de.baumato.jobs.builder;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.ProgressMonitorWrapper;
+
+/**
+ * <p>
+ * Wraps a progress monitor and forwards work and sub task names at most once per interval. Work
+ * reported in between is accumulated, so calling <code>worked(1)</code> for millions of items does
+ * not cause as many progress view updates.
+ * <p>
+ * The cancellation state of the wrapped monitor is requested at most once per interval as well.
+ * Once canceled, this monitor stays canceled.
+ */
+public class ThrottlingProgressMonitor extends ProgressMonitorWrapper {
+
+  private final long intervalNanos;
+  private long nextUpdate;
+  private double pendingWork = 0;
+  private String pendingSubTask = null;
+  private long nextCancelCheck;
+  private volatile boolean canceled = false;
+
+  /**
+   * Constructs a new instance.
+   *
+   * @param monitor the monitor to wrap
+   * @param interval the minimum time between two updates of the wrapped monitor
+   * @param timeUnit the time unit of the interval
+   */
+  public ThrottlingProgressMonitor(IProgressMonitor monitor, long interval, TimeUnit timeUnit) {
+    super(checkNotNull(monitor));
+    checkArgument(interval >= 0, "Given interval is negative.");
+    this.intervalNanos = timeUnit.toNanos(interval);
+    long now = System.nanoTime();
+    this.nextUpdate = now;
+    this.nextCancelCheck = now;
+  }
+
+  @Override
+  public void internalWorked(double work) {
+    pendingWork += work;
+    long now = System.nanoTime();
+    if (now - nextUpdate >= 0) {
+      flush(now);
+    }
+  }
+
+  @Override
+  public void worked(int work) {
+    internalWorked(work);
+  }
+
+  @Override
+  public void subTask(String name) {
+    pendingSubTask = name;
+    long now = System.nanoTime();
+    if (now - nextUpdate >= 0) {
+      flush(now);
+    }
+  }
+
+  @Override
+  public void done() {
+    flush(System.nanoTime());
+    super.done();
+  }
+
+  private void flush(long now) {
+    nextUpdate = now + intervalNanos;
+    if (pendingSubTask != null) {
+      super.subTask(pendingSubTask);
+      pendingSubTask = null;
+    }
+    if (pendingWork > 0) {
+      super.internalWorked(pendingWork);
+      pendingWork = 0;
+    }
+  }
+
+  @Override
+  public boolean isCanceled() {
+    if (canceled) {
+      return true;
+    }
+    long now = System.nanoTime();
+    if (now - nextCancelCheck >= 0) {
+      nextCancelCheck = now + intervalNanos;
+      canceled = super.isCanceled();
+    }
+    return canceled;
+  }
+
+  @Override
+  public void setCanceled(boolean value) {
+    canceled = value;
+    super.setCanceled(value);
+  }
+}
@@ -0,0 +1,164 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Tobias Baumann.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Tobias Baumann - initial API and implementation
+ ******************************************************************************/
+package de.baumato.jobs.builder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * <p>
+ * Hashed timer wheel shared by all jobs to run timeout tasks. A single thread advances the wheel
+ * each tick and runs the expired tasks of the current bucket. Adding and canceling a timeout are
+ * O(1), canceled timeouts are dropped when the wheel passes their bucket.
+ * <p>
+ * Timeouts fire with a precision of one tick. Tasks are run in the timer thread and must be short.
+ */
+final class TimerWheel {
+
+  static final TimerWheel INSTANCE = new TimerWheel(TimeUnit.MILLISECONDS.toNanos(50), 512);
+
+  private final long tickNanos;
+  private final List<List<Timeout>> buckets;
+  private final Queue<Timeout> newTimeouts = new ConcurrentLinkedQueue<Timeout>();
+  private final AtomicBoolean started = new AtomicBoolean();
+  private long startNanos;
+  private long tick = 0;
+
+  private TimerWheel(long tickNanos, int bucketCount) {
+    this.tickNanos = tickNanos;
+    this.buckets = new ArrayList<List<Timeout>>(bucketCount);
+    for (int i = 0; i < bucketCount; i++) {
+      buckets.add(new ArrayList<Timeout>());
+    }
+  }
+
+  /**
+   * Runs the given task after the given delay unless the returned timeout gets canceled before.
+   */
+  Timeout schedule(Runnable task, long delayNanos) {
+    startIfNecessary();
+    Timeout timeout = new Timeout(task, System.nanoTime() + delayNanos);
+    newTimeouts.add(timeout);
+    return timeout;
+  }
+
+  private void startIfNecessary() {
+    if (started.compareAndSet(false, true)) {
+      startNanos = System.nanoTime();
+      Thread worker = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          runWheel();
+        }
+      }, "JobBuilder timer");
+      worker.setDaemon(true);
+      worker.start();
+    }
+  }
+
+  private void runWheel() {
+    while (true) {
+      long deadline = startNanos + (tick + 1) * tickNanos;
+      long sleepNanos;
+      while ((sleepNanos = deadline - System.nanoTime()) > 0) {
+        try {
+          TimeUnit.NANOSECONDS.sleep(sleepNanos);
+        } catch (InterruptedException e) {
+          // the timer thread is never interrupted intentionally, keep going
+        }
+      }
+      transferNewTimeouts();
+      expireTimeouts(buckets.get((int) (tick % buckets.size())), deadline);
+      tick++;
+    }
+  }
+
+  private void transferNewTimeouts() {
+    Timeout timeout;
+    while ((timeout = newTimeouts.poll()) != null) {
+      if (timeout.isCanceled()) {
+        continue;
+      }
+      long ticks = Math.max(tick, (timeout.deadlineNanos - startNanos) / tickNanos);
+      timeout.remainingRounds = (ticks - tick) / buckets.size();
+      buckets.get((int) (ticks % buckets.size())).add(timeout);
+    }
+  }
+
+  private void expireTimeouts(List<Timeout> bucket, long deadline) {
+    List<Timeout> expired = new ArrayList<Timeout>();
+    for (int i = bucket.size() - 1; i >= 0; i--) {
+      Timeout timeout = bucket.get(i);
+      if (timeout.isCanceled()) {
+        removeAt(bucket, i);
+      } else if (timeout.remainingRounds <= 0 && timeout.deadlineNanos - deadline <= 0) {
+        removeAt(bucket, i);
+        expired.add(timeout);
+      } else {
+        timeout.remainingRounds--;
+      }
+    }
+    for (Timeout timeout : expired) {
+      timeout.expire();
+    }
+  }
+
+  /** removes in O(1), the order within a bucket does not matter */
+  private static void removeAt(List<Timeout> bucket, int index) {
+    int last = bucket.size() - 1;
+    bucket.set(index, bucket.get(last));
+    bucket.remove(last);
+  }
+
+  /**
+   * A task scheduled by the timer wheel.
+   */
+  static final class Timeout {
+
+    private final Runnable task;
+    private final long deadlineNanos;
+    private final AtomicBoolean done = new AtomicBoolean();
+    /** only accessed by the timer thread */
+    private long remainingRounds;
+
+    private Timeout(Runnable task, long deadlineNanos) {
+      this.task = task;
+      this.deadlineNanos = deadlineNanos;
+    }
+
+    /**
+     * Cancels the timeout, the task is not run if it has not been run yet.
+     */
+    void cancel() {
+      done.set(true);
+    }
+
+    boolean isCanceled() {
+      return done.get();
+    }
+
+    private void expire() {
+      if (done.compareAndSet(false, true)) {
+        try {
+          task.run();
+        } catch (Throwable e) {
+          // a failing task must not stop the timer thread, report it as if it was uncaught
+          Thread timerThread = Thread.currentThread();
+          timerThread.getUncaughtExceptionHandler().uncaughtException(timerThread, e);
+        }
+      }
+    }
+  }
+}
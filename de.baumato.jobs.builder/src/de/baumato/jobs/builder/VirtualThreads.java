@@ -0,0 +1,48 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Tobias Baumann.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Tobias Baumann - initial API and implementation
+ ******************************************************************************/
+package de.baumato.jobs.builder;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Creates virtual threads if the running JVM supports them (Java 21 or later). The bundle itself is
+ * compiled for older Java versions, so the API is accessed reflectively once.
+ */
+final class VirtualThreads {
+
+  private static final ThreadFactory FACTORY = createFactory();
+
+  private VirtualThreads() {}
+
+  private static ThreadFactory createFactory() {
+    try {
+      Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+      Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+      builder = builderClass.getMethod("name", String.class, long.class)
+          .invoke(builder, "JobBuilder virtual thread ", 0L);
+      return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+    } catch (Exception e) {
+      // virtual threads are not supported by this JVM
+      return null;
+    }
+  }
+
+  static boolean isAvailable() {
+    return FACTORY != null;
+  }
+
+  /**
+   * Returns a new, not yet started virtual thread running the given runnable.
+   */
+  static Thread newThread(Runnable runnable) {
+    return FACTORY.newThread(runnable);
+  }
+}